@@ -3,8 +3,10 @@ package ewm;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @ComponentScan(basePackages = {"ewm", "client"})
+@EnableScheduling
 @SpringBootApplication
 public class MainServiceApplication {
     public static void main(String[] args) {
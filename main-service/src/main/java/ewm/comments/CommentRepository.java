@@ -11,4 +11,6 @@ public interface CommentRepository extends JpaRepository<Comment, Long> {
 
     List<Comment> findAllByEventId(Long eventId, Pageable pageable);
 
+    List<Comment> findAllByEventIdAndIdGreaterThanOrderById(Long eventId, long id, Pageable pageable);
+
 }
@@ -5,6 +5,7 @@ import ewm.comments.service.CommentService;
 import jakarta.validation.constraints.Positive;
 import jakarta.validation.constraints.PositiveOrZero;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
@@ -18,11 +19,12 @@ public class CommentControllerPublic {
     private final CommentService commentService;
 
     @GetMapping("/event/{eventId}")
-    List<CommentDto> getComments(
+    ResponseEntity<List<CommentDto>> getComments(
             @PathVariable Long eventId,
             @RequestParam(value = "from", defaultValue = "0") @PositiveOrZero Integer from,
-            @RequestParam(value = "size", defaultValue = "10") @Positive Integer size) {
-        return commentService.getCommentsByUserId(eventId, from, size);
+            @RequestParam(value = "size", defaultValue = "10") @Positive Integer size,
+            @RequestParam(required = false) String cursor) {
+        return commentService.getCommentsByEventId(eventId, from, size, cursor).toResponseEntity();
     }
 
     @GetMapping("/{commentId}")
@@ -2,6 +2,7 @@ package ewm.comments.service;
 
 import ewm.comments.dto.CommentDto;
 import ewm.comments.dto.CommentRequestDto;
+import ewm.paging.CursorPage;
 
 import java.util.List;
 
@@ -17,7 +18,11 @@ public interface CommentService {
 
     CommentDto getCommentById(long commentId);
 
-    List<CommentDto> getCommentsByEventId(Long eventId, Integer from, Integer size);
+    /**
+     * Comments in the order they were written. A {@code cursor} from a previous page takes precedence over
+     * {@code from}.
+     */
+    CursorPage<CommentDto> getCommentsByEventId(Long eventId, Integer from, Integer size, String cursor);
 
     List<CommentDto> getCommentsByUserId(Long userId, Integer from, Integer size);
 
@@ -9,11 +9,13 @@ import ewm.events.Event;
 import ewm.events.EventRepository;
 import ewm.exception.BadRequestException;
 import ewm.exception.NotFoundException;
-import ewm.requests.RequestRepository;
+import ewm.paging.CursorPage;
+import ewm.paging.PageCursor;
 import ewm.user.User;
 import ewm.user.service.UserService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -21,7 +23,6 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 import static ewm.events.enums.State.PUBLISHED;
-import static ewm.requests.RequestStatus.CONFIRMED;
 
 @Transactional
 @Service
@@ -29,7 +30,6 @@ import static ewm.requests.RequestStatus.CONFIRMED;
 public class CommentServiceImpl implements CommentService {
     private final UserService userService;
     private final EventRepository eventRepository;
-    private final RequestRepository requestRepository;
     private final CommentMapper commentMapper;
     private final CommentRepository commentRepository;
 
@@ -41,7 +41,7 @@ public class CommentServiceImpl implements CommentService {
             throw new BadRequestException("Для комментирования событие должно иметь статус PUBLISHED.");
         }
         dto.setCreated(LocalDateTime.now());
-        dto.setConfirmedRequests(requestRepository.countByEventIdAndStatus(eventId, CONFIRMED));
+        dto.setConfirmedRequests(event.getConfirmedRequests());
 
         Comment comment = commentMapper.commentRequestDtoToModel(dto, author, event);
         return commentMapper.modelToCommentDto(commentRepository.save(comment));
@@ -87,14 +87,20 @@ public class CommentServiceImpl implements CommentService {
 
     @Override
     @Transactional(readOnly = true)
-    public List<CommentDto> getCommentsByEventId(Long eventId, Integer from, Integer size) {
+    public CursorPage<CommentDto> getCommentsByEventId(Long eventId, Integer from, Integer size, String cursor) {
         checkAndReturnEvent(eventId);
-        List<Comment> comments = commentRepository.findAllByEventId(eventId,
-                PageRequest.of(from / size, size));
+        List<Comment> comments;
+        if (cursor != null) {
+            comments = commentRepository.findAllByEventIdAndIdGreaterThanOrderById(eventId,
+                    PageCursor.decode(cursor).id(), PageRequest.of(0, size));
+        } else {
+            comments = commentRepository.findAllByEventId(eventId, PageRequest.of(from / size, size, Sort.by("id")));
+        }
         if (comments.isEmpty()) {
-            return List.of();
+            return new CursorPage<>(List.of(), null);
         }
-        return commentMapper.listModelToCommentDto(comments);
+        String nextCursor = comments.size() == size ? new PageCursor("", comments.getLast().getId()).encode() : null;
+        return new CursorPage<>(commentMapper.listModelToCommentDto(comments), nextCursor);
     }
 
     @Override
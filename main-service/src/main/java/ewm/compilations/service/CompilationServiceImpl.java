@@ -11,8 +11,6 @@ import ewm.events.EventMapper;
 import ewm.events.EventRepository;
 import ewm.events.dto.EventShortDto;
 import ewm.exception.NotFoundException;
-import ewm.requests.RequestRepository;
-import ewm.requests.dto.ConfirmedRequestsDto;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -20,19 +18,15 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
-import static ewm.requests.RequestStatus.CONFIRMED;
-
 @Transactional
 @Service
 @RequiredArgsConstructor
 public class CompilationServiceImpl implements CompilationService {
     private final CompilationRepository compilationRepository;
     private final EventRepository eventRepository;
-    private final RequestRepository requestRepository;
     private final EventMapper eventMapper;
     private final CompilationMapper compilationMapper;
 
@@ -48,25 +42,11 @@ public class CompilationServiceImpl implements CompilationService {
             compilations = compilationRepository.findAll(pageable).getContent();
         }
 
-        List<Long> compilationIds = compilations.stream()
-                .map(Compilation::getId)
-                .toList();
-
-        List<Event> events = eventRepository.findAllByInitiatorIdIn(compilationIds);
-
-        List<Long> eventIds = events.stream()
-                .map(Event::getId)
-                .toList();
-
-        Map<Long, Long> confirmedRequests = requestRepository.findAllByEventIdInAndStatus(eventIds, CONFIRMED)
-                .stream()
-                .collect(Collectors.toMap(ConfirmedRequestsDto::getEvent, ConfirmedRequestsDto::getCount));
-
         List<CompilationDto> result = compilations.stream()
                 .map(compilation -> {
                     CompilationDto compilationDto = compilationMapper.toCompilationDto(compilation);
                     List<EventShortDto> eventShortDtos = compilation.getEvents().stream()
-                            .map(event -> eventMapper.toEventShortDto(event, confirmedRequests.get(event.getId())))
+                            .map(eventMapper::toEventShortDto)
                             .collect(Collectors.toList());
                     compilationDto.setEvents(eventShortDtos);
                     return compilationDto;
@@ -81,12 +61,8 @@ public class CompilationServiceImpl implements CompilationService {
         Compilation compilation = getCompilation(compilationId);
         CompilationDto compilationDto = compilationMapper.toCompilationDto(compilation);
         if (compilation.getEvents() != null) {
-            List<Long> ids = compilation.getEvents().stream().map(Event::getId).collect(Collectors.toList());
-            Map<Long, Long> confirmedRequests = requestRepository.findAllByEventIdInAndStatus(ids, CONFIRMED)
-                    .stream()
-                    .collect(Collectors.toMap(ConfirmedRequestsDto::getEvent, ConfirmedRequestsDto::getCount));
             compilationDto.setEvents(compilation.getEvents().stream()
-                    .map(event -> eventMapper.toEventShortDto(event, confirmedRequests.get(event.getId())))
+                    .map(eventMapper::toEventShortDto)
                     .collect(Collectors.toList()));
         }
         return compilationDto;
@@ -136,12 +112,8 @@ public class CompilationServiceImpl implements CompilationService {
     private CompilationDto setCompilationDto(Compilation compilation) {
         CompilationDto compilationDto = compilationMapper.toCompilationDto(compilationRepository.save(compilation));
         if (compilation.getEvents() != null) {
-            List<Long> ids = compilation.getEvents().stream().map(Event::getId).collect(Collectors.toList());
-            Map<Long, Long> confirmedRequests = requestRepository.findAllByEventIdInAndStatus(ids, CONFIRMED)
-                    .stream()
-                    .collect(Collectors.toMap(ConfirmedRequestsDto::getEvent, ConfirmedRequestsDto::getCount));
             compilationDto.setEvents(compilation.getEvents().stream()
-                    .map(event -> eventMapper.toEventShortDto(event, confirmedRequests.get(event.getId())))
+                    .map(eventMapper::toEventShortDto)
                     .collect(Collectors.toList()));
         }
         return compilationDto;
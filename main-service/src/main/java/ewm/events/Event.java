@@ -66,5 +66,17 @@ public class Event {
     @Column(nullable = false)
     private String title;
 
+    /**
+     * Unique views copied from stats-server by {@link ewm.views.EventViewsSync}, only used for sorting.
+     */
+    @Column(nullable = false, updatable = false)
+    private long views;
+
+    /**
+     * Confirmed participation requests, changed only by {@link EventRepository#addConfirmedRequests}.
+     */
+    @Column(name = "confirmed_requests", nullable = false, updatable = false)
+    private long confirmedRequests;
+
 
 }
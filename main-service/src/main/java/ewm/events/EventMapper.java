@@ -1,9 +1,11 @@
 package ewm.events;
 
 import ewm.categories.CategoryMapper;
+import ewm.categories.dto.CategoryDto;
 import ewm.events.dto.*;
 import ewm.locations.LocationMapper;
 import ewm.user.UserMapper;
+import ewm.user.dto.UserShortDto;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
@@ -26,12 +28,12 @@ public class EventMapper {
                 .build();
     }
 
-    public EventFullDto modelToEventFullDto(Event event, Long confirmedRequests) {
+    public EventFullDto modelToEventFullDto(Event event) {
         return EventFullDto.builder()
                 .id(event.getId())
                 .annotation(event.getAnnotation())
                 .category(categoryMapper.modelToDto(event.getCategory()))
-                .confirmedRequests(confirmedRequests)
+                .confirmedRequests(event.getConfirmedRequests())
                 .createdOn(event.getCreatedOn())
                 .description(event.getDescription())
                 .eventDate(event.getEventDate())
@@ -46,6 +48,13 @@ public class EventMapper {
                 .build();
     }
 
+    public EventShortDto toEventShortDto(Event event) {
+        return toEventShortDto(event, event.getConfirmedRequests());
+    }
+
+    /**
+     * With the confirmed requests counted at some other time, e.g. when a comment was written.
+     */
     public EventShortDto toEventShortDto(Event event, Long confirmedRequests) {
         return EventShortDto.builder()
                 .id(event.getId())
@@ -60,12 +69,12 @@ public class EventMapper {
     }
 
 
-    public EventViewsFullDto toEventFullDtoWithViews(Event event, Long views, Long confirmedRequests) {
+    public EventViewsFullDto toEventFullDtoWithViews(Event event, Long views) {
         return EventViewsFullDto.builder()
                 .id(event.getId())
                 .annotation(event.getAnnotation())
                 .category(categoryMapper.modelToDto(event.getCategory()))
-                .confirmedRequests(confirmedRequests)
+                .confirmedRequests(event.getConfirmedRequests())
                 .createdOn(event.getCreatedOn())
                 .description(event.getDescription())
                 .eventDate(event.getEventDate())
@@ -81,16 +90,18 @@ public class EventMapper {
                 .build();
     }
 
-    public EventViewsShortDto toEventShortDtoWithViews(Event event, Long views, Long confirmedRequests) {
+    public EventViewsShortDto toEventShortDtoWithViews(EventShortView event, Long views) {
         return EventViewsShortDto.builder()
-                .id(event.getId())
-                .annotation(event.getAnnotation())
-                .category(categoryMapper.modelToDto(event.getCategory()))
-                .confirmedRequests(confirmedRequests)
-                .eventDate(event.getEventDate())
-                .initiator(userMapper.modelToUserShortDto(event.getInitiator()))
-                .paid(event.getPaid())
-                .title(event.getTitle())
+                .id(event.id())
+                .annotation(event.annotation())
+                .category(new CategoryDto(event.categoryId(), event.categoryName()))
+                .confirmedRequests(event.confirmedRequests())
+                .eventDate(event.eventDate())
+                .initiator(event.initiatorId() != null
+                        ? UserShortDto.builder().id(event.initiatorId()).name(event.initiatorName()).build()
+                        : null)
+                .paid(event.paid())
+                .title(event.title())
                 .views(views)
                 .build();
     }
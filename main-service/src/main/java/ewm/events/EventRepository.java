@@ -1,17 +1,24 @@
 package ewm.events;
 
+import ewm.events.enums.State;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
-public interface EventRepository extends JpaRepository<Event, Long> {
+public interface EventRepository extends JpaRepository<Event, Long>, EventShortViewRepository {
 
+    @EntityGraph(attributePaths = {"category", "initiator", "location"})
     List<Event> findAllByInitiatorId(Long userId, Pageable pageable);
 
     Optional<Event> findByIdAndInitiatorId(Long eventId, Long userId);
@@ -19,7 +26,33 @@ public interface EventRepository extends JpaRepository<Event, Long> {
     @Query("SELECT e FROM Event e WHERE e.initiator.id IN :initiatorIds")
     List<Event> findAllByInitiatorIdIn(List<Long> initiatorIds);
 
+    @EntityGraph(attributePaths = {"category", "initiator", "location"})
     Page<Event> findAll(Specification<Event> specification, Pageable pageable);
 
+    @EntityGraph(attributePaths = {"category", "initiator", "location"})
     Set<Event> findAllByIdIn(List<Long> events);
+
+    List<Event> findAllByStateAndIdGreaterThanOrderById(State state, long id, Pageable pageable);
+
+    List<Event> findAllByIdGreaterThanOrderById(long id, Pageable pageable);
+
+    @Query("SELECT MIN(e.createdOn) FROM Event e")
+    LocalDateTime findEarliestCreatedOn();
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Event e SET e.views = :views WHERE e.id = :eventId AND e.views <> :views")
+    int updateViews(@Param("eventId") long eventId, @Param("views") long views);
+
+    /**
+     * Adds {@code delta} to the confirmed requests unless that would exceed the participant limit, returns
+     * the number of updated rows. The check and the update are one statement, so concurrent confirmations
+     * cannot overbook an event. Pending changes are flushed first and the persistence context is cleared
+     * afterwards, so an event loaded later in the transaction has the new count.
+     */
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("UPDATE Event e SET e.confirmedRequests = e.confirmedRequests + :delta WHERE e.id = :eventId "
+            + "AND (:delta <= 0 OR e.participantLimit IS NULL OR e.participantLimit = 0 "
+            + "OR e.confirmedRequests + :delta <= e.participantLimit)")
+    int addConfirmedRequests(@Param("eventId") long eventId, @Param("delta") long delta);
 }
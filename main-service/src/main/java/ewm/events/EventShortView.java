@@ -0,0 +1,13 @@
+package ewm.events;
+
+import java.time.LocalDateTime;
+
+/**
+ * Columns of an event needed for short DTOs, selected by {@link EventShortViewRepository} without loading
+ * the entity.
+ */
+public record EventShortView(Long id, String annotation, Long categoryId, String categoryName,
+                             LocalDateTime createdOn, LocalDateTime eventDate, Long initiatorId,
+                             String initiatorName, Boolean paid, String title, Long views,
+                             Long confirmedRequests) {
+}
@@ -0,0 +1,15 @@
+package ewm.events;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+public interface EventShortViewRepository {
+
+    /**
+     * Selects the events matching the specification as {@link EventShortView}s, without a count query. A
+     * specification may order the query itself, {@code sort} is then left unsorted.
+     */
+    List<EventShortView> findShortViews(Specification<Event> specification, Sort sort, long offset, int limit);
+}
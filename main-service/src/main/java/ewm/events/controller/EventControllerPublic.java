@@ -8,6 +8,7 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.constraints.Positive;
 import jakarta.validation.constraints.PositiveOrZero;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
@@ -22,7 +23,7 @@ public class EventControllerPublic {
     private final EventService eventService;
 
     @GetMapping
-    public List<EventViewsShortDto> getEvents(
+    public ResponseEntity<List<EventViewsShortDto>> getEvents(
             @RequestParam(required = false) String text,
             @RequestParam(required = false) List<Long> categories,
             @RequestParam(required = false) Boolean paid,
@@ -36,9 +37,10 @@ public class EventControllerPublic {
             Integer from,
             @RequestParam(value = "size", defaultValue = "10") @Positive
             Integer size,
+            @RequestParam(required = false) String cursor,
             HttpServletRequest request) {
         return eventService.getEvents(text, categories, paid, rangeStart, rangeEnd, onlyAvailable,
-                sort, from, size, request);
+                sort, from, size, cursor, request).toResponseEntity();
     }
 
     @GetMapping("/{eventId}")
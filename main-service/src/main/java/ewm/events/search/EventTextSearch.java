@@ -0,0 +1,29 @@
+package ewm.events.search;
+
+import ewm.events.Event;
+import org.springframework.data.jpa.domain.Specification;
+
+/**
+ * Full-text search over the annotation and description of events, used by the {@code text} parameter of
+ * the public event search. An event matches if both texts together contain every word of the query,
+ * words of the query also match as prefixes. The implementation is chosen by
+ * {@code ewm.events.search.engine}: {@code postgres} or {@code memory}.
+ */
+public interface EventTextSearch {
+
+    /**
+     * Restricts to matching events. A query without words does not restrict anything.
+     */
+    Specification<Event> matching(String text);
+
+    /**
+     * Like {@link #matching}, and orders the best matching events first.
+     */
+    Specification<Event> matchingByRelevance(String text);
+
+    /**
+     * Has to be called whenever an event was saved.
+     */
+    default void indexed(Event event) {
+    }
+}
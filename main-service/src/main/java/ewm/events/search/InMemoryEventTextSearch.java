@@ -0,0 +1,179 @@
+package ewm.events.search;
+
+import ewm.events.Event;
+import ewm.events.EventRepository;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index of event words kept in memory, for databases without full-text search such as H2. It is
+ * loaded from the database on startup and updated by {@link #indexed} after the saving transaction has
+ * committed. Matching events are passed to the database as an id list, so this only suits small catalogs.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "ewm.events.search.engine", havingValue = "memory")
+public class InMemoryEventTextSearch implements EventTextSearch, SmartInitializingSingleton {
+    private static final int ANNOTATION_WEIGHT = 2;
+    private static final int DESCRIPTION_WEIGHT = 1;
+
+    private final EventRepository eventRepository;
+    // word -> event id -> weight of the word in that event
+    private final NavigableMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+    private final Map<Long, List<String>> eventTerms = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @Value("${ewm.events.search.load-batch-size:1000}")
+    private int loadBatchSize;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        long lastId = 0;
+        int loaded = 0;
+        List<Event> events;
+        do {
+            events = eventRepository.findAllByIdGreaterThanOrderById(lastId, PageRequest.of(0, loadBatchSize));
+            for (Event event : events) {
+                index(event);
+            }
+            loaded += events.size();
+            if (!events.isEmpty()) {
+                lastId = events.getLast().getId();
+            }
+        } while (events.size() == loadBatchSize);
+        log.info("Indexed {} events for text search", loaded);
+    }
+
+    @Override
+    public Specification<Event> matching(String text) {
+        Map<Long, Integer> scores = search(text);
+        if (scores == null) {
+            return Specification.where(null);
+        }
+        return (root, query, criteriaBuilder) -> scores.isEmpty()
+                ? criteriaBuilder.disjunction()
+                : root.get("id").in(scores.keySet());
+    }
+
+    @Override
+    public Specification<Event> matchingByRelevance(String text) {
+        Map<Long, Integer> scores = search(text);
+        if (scores == null) {
+            return Specification.where(null);
+        }
+        if (scores.isEmpty()) {
+            return (root, query, criteriaBuilder) -> criteriaBuilder.disjunction();
+        }
+        List<Long> ranked = scores.entrySet().stream()
+                .sorted(Map.Entry.<Long, Integer>comparingByValue(Comparator.reverseOrder())
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .map(Map.Entry::getKey)
+                .toList();
+        return (root, query, criteriaBuilder) -> {
+            CriteriaBuilder.SimpleCase<Long, Integer> rank = criteriaBuilder.selectCase(root.<Long>get("id"));
+            for (int i = 0; i < ranked.size(); i++) {
+                rank = rank.when(ranked.get(i), i);
+            }
+            Expression<Integer> position = rank.otherwise(ranked.size());
+            query.orderBy(criteriaBuilder.asc(position));
+            return root.get("id").in(ranked);
+        };
+    }
+
+    @Override
+    public void indexed(Event event) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    index(event);
+                }
+            });
+        } else {
+            index(event);
+        }
+    }
+
+    /**
+     * Returns the weight of every matching event, null if the text has no words.
+     */
+    private Map<Long, Integer> search(String text) {
+        List<String> terms = SearchTerms.of(text);
+        if (terms.isEmpty()) {
+            return null;
+        }
+        Map<Long, Integer> scores = null;
+        lock.readLock().lock();
+        try {
+            for (String term : terms) {
+                Map<Long, Integer> termScores = new HashMap<>();
+                for (Map<Long, Integer> events : postings.subMap(term, true, term + Character.MAX_VALUE, true)
+                        .values()) {
+                    events.forEach((eventId, weight) -> termScores.merge(eventId, weight, Integer::sum));
+                }
+                if (scores == null) {
+                    scores = termScores;
+                } else {
+                    Map<Long, Integer> previous = scores;
+                    termScores.keySet().retainAll(previous.keySet());
+                    termScores.replaceAll((eventId, weight) -> weight + previous.get(eventId));
+                    scores = termScores;
+                }
+                if (scores.isEmpty()) {
+                    break;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return scores;
+    }
+
+    private void index(Event event) {
+        Map<String, Integer> weights = new HashMap<>();
+        for (String term : SearchTerms.of(event.getAnnotation())) {
+            weights.merge(term, ANNOTATION_WEIGHT, Integer::sum);
+        }
+        for (String term : SearchTerms.of(event.getDescription())) {
+            weights.merge(term, DESCRIPTION_WEIGHT, Integer::sum);
+        }
+        lock.writeLock().lock();
+        try {
+            List<String> previous = eventTerms.remove(event.getId());
+            if (previous != null) {
+                for (String term : previous) {
+                    Map<Long, Integer> events = postings.get(term);
+                    events.remove(event.getId());
+                    if (events.isEmpty()) {
+                        postings.remove(term);
+                    }
+                }
+            }
+            weights.forEach((term, weight) -> postings.computeIfAbsent(term, key -> new HashMap<>())
+                    .put(event.getId(), weight));
+            eventTerms.put(event.getId(), List.copyOf(weights.keySet()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package ewm.events.search;
+
+import ewm.events.Event;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Searches with PostgreSQL full-text search on the GIN index {@code events_text_search_idx}, which the
+ * database keeps up to date on every insert and update of an event. Annotations weigh more than descriptions
+ * when ranking.
+ */
+@Component
+@ConditionalOnProperty(name = "ewm.events.search.engine", havingValue = "postgres", matchIfMissing = true)
+public class PostgresEventTextSearch implements EventTextSearch {
+
+    @Override
+    public Specification<Event> matching(String text) {
+        String query = toTsQuery(text);
+        if (query == null) {
+            return Specification.where(null);
+        }
+        return (root, criteriaQuery, criteriaBuilder) -> match(root, criteriaBuilder, query);
+    }
+
+    @Override
+    public Specification<Event> matchingByRelevance(String text) {
+        String query = toTsQuery(text);
+        if (query == null) {
+            return Specification.where(null);
+        }
+        return (root, criteriaQuery, criteriaBuilder) -> {
+            criteriaQuery.orderBy(
+                    criteriaBuilder.desc(criteriaBuilder.function(PostgresSearchFunctions.RANK, Float.class,
+                            root.get("annotation"), root.get("description"), criteriaBuilder.literal(query))),
+                    criteriaBuilder.asc(root.get("id")));
+            return match(root, criteriaBuilder, query);
+        };
+    }
+
+    private Predicate match(Root<Event> root, CriteriaBuilder criteriaBuilder, String query) {
+        return criteriaBuilder.isTrue(criteriaBuilder.function(PostgresSearchFunctions.MATCH, Boolean.class,
+                root.get("annotation"), root.get("description"), criteriaBuilder.literal(query)));
+    }
+
+    /**
+     * Builds a tsquery from plain words only, so user input can never be a malformed tsquery.
+     */
+    private static String toTsQuery(String text) {
+        List<String> terms = SearchTerms.of(text);
+        if (terms.isEmpty()) {
+            return null;
+        }
+        return terms.stream().map(term -> term + ":*").collect(Collectors.joining(" & "));
+    }
+}
@@ -0,0 +1,34 @@
+package ewm.events.search;
+
+import org.hibernate.boot.model.FunctionContributions;
+import org.hibernate.boot.model.FunctionContributor;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.type.BasicTypeRegistry;
+import org.hibernate.type.StandardBasicTypes;
+
+/**
+ * Registers the full-text functions used by {@link PostgresEventTextSearch}, see
+ * {@code META-INF/services/org.hibernate.boot.model.FunctionContributor}. The document expression has to stay
+ * identical to the one of {@code events_text_search_idx} in {@code schema-search-postgresql.sql}, otherwise
+ * PostgreSQL does not use the index.
+ */
+public class PostgresSearchFunctions implements FunctionContributor {
+    static final String MATCH = "event_text_match";
+    static final String RANK = "event_text_rank";
+
+    private static final String DOCUMENT = "(setweight(to_tsvector('simple', ?1), 'A')"
+            + " || setweight(to_tsvector('simple', ?2), 'B'))";
+    private static final String QUERY = "to_tsquery('simple', ?3)";
+
+    @Override
+    public void contributeFunctions(FunctionContributions functionContributions) {
+        if (!(functionContributions.getDialect() instanceof PostgreSQLDialect)) {
+            return;
+        }
+        BasicTypeRegistry types = functionContributions.getTypeConfiguration().getBasicTypeRegistry();
+        functionContributions.getFunctionRegistry().registerPattern(MATCH,
+                "(" + DOCUMENT + " @@ " + QUERY + ")", types.resolve(StandardBasicTypes.BOOLEAN));
+        functionContributions.getFunctionRegistry().registerPattern(RANK,
+                "ts_rank(" + DOCUMENT + ", " + QUERY + ")", types.resolve(StandardBasicTypes.FLOAT));
+    }
+}
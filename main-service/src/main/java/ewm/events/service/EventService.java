@@ -1,6 +1,7 @@
 package ewm.events.service;
 
 import ewm.events.dto.*;
+import ewm.paging.CursorPage;
 import jakarta.servlet.http.HttpServletRequest;
 
 import java.time.LocalDateTime;
@@ -21,9 +22,14 @@ public interface EventService {
                                              LocalDateTime rangeStart, LocalDateTime rangeEnd,
                                              Integer from, Integer size);
 
-    List<EventViewsShortDto> getEvents(String text, List<Long> categories, Boolean paid, LocalDateTime rangeStart,
-                                       LocalDateTime rangeEnd, Boolean onlyAvailable, String sort, Integer from,
-                                       Integer size, HttpServletRequest request);
+    /**
+     * Published events matching the filters. A {@code cursor} from a previous page takes precedence over
+     * {@code from}; sort RELEVANCE can only be paged with {@code from}.
+     */
+    CursorPage<EventViewsShortDto> getEvents(String text, List<Long> categories, Boolean paid,
+                                             LocalDateTime rangeStart, LocalDateTime rangeEnd, Boolean onlyAvailable,
+                                             String sort, Integer from, Integer size, String cursor,
+                                             HttpServletRequest request);
 
     EventViewsFullDto getEventById(Long eventId, HttpServletRequest request);
 
@@ -1,28 +1,28 @@
 package ewm.events.service;
 
 import client.StatsClient;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import dto.EndpointHitDto;
-import dto.ViewStatsDto;
 import ewm.categories.Category;
 import ewm.categories.service.CategoryService;
 import ewm.events.Event;
 import ewm.events.EventMapper;
 import ewm.events.EventRepository;
+import ewm.events.EventShortView;
 import ewm.events.dto.*;
 import ewm.events.enums.State;
 import ewm.events.enums.StateActionAdmin;
 import ewm.events.enums.StateActionPrivate;
+import ewm.events.search.EventTextSearch;
 import ewm.exception.BadRequestException;
 import ewm.exception.ForbiddenException;
 import ewm.exception.NotFoundException;
 import ewm.locations.Location;
 import ewm.locations.service.LocationService;
-import ewm.requests.RequestRepository;
-import ewm.requests.dto.ConfirmedRequestsDto;
+import ewm.paging.CursorPage;
+import ewm.paging.PageCursor;
 import ewm.user.User;
 import ewm.user.service.UserService;
+import ewm.views.service.ViewService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.ValidationException;
 import lombok.RequiredArgsConstructor;
@@ -30,12 +30,12 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -46,7 +46,6 @@ import static ewm.events.enums.StateActionAdmin.PUBLISH_EVENT;
 import static ewm.events.enums.StateActionAdmin.REJECT_EVENT;
 import static ewm.events.enums.StateActionPrivate.CANCEL_REVIEW;
 import static ewm.events.enums.StateActionPrivate.SEND_TO_REVIEW;
-import static ewm.requests.RequestStatus.CONFIRMED;
 
 @Transactional
 @Service
@@ -57,9 +56,9 @@ public class EventServiceImpl implements EventService {
     private final UserService userService;
     private final CategoryService categoryService;
     private final LocationService locationService;
-    private final RequestRepository requestRepository;
     private final StatsClient statsClient;
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ViewService viewService;
+    private final EventTextSearch textSearch;
     @Value("${app}")
     private String app;
 
@@ -77,7 +76,9 @@ public class EventServiceImpl implements EventService {
         event.setCreatedOn(LocalDateTime.now());
         event.setState(PENDING);
 
-        return eventMapper.modelToEventFullDto(eventRepository.save(event), 0L);
+        event = eventRepository.save(event);
+        textSearch.indexed(event);
+        return eventMapper.modelToEventFullDto(event);
     }
 
     @Override
@@ -130,7 +131,8 @@ public class EventServiceImpl implements EventService {
             }
         }
         event = eventRepository.save(event);
-        return eventMapper.modelToEventFullDto(event, requestRepository.countByEventIdAndStatus(eventId, CONFIRMED));
+        textSearch.indexed(event);
+        return eventMapper.modelToEventFullDto(event);
     }
 
     @Override
@@ -187,19 +189,16 @@ public class EventServiceImpl implements EventService {
         }
 
         event = eventRepository.save(event);
-        return eventMapper.modelToEventFullDto(event, requestRepository.countByEventIdAndStatus(eventId, CONFIRMED));
+        textSearch.indexed(event);
+        return eventMapper.modelToEventFullDto(event);
     }
 
     @Override
     @Transactional(readOnly = true)
     public List<EventShortDto> getEventsByOwnerId(Long userId, Integer from, Integer size) {
         List<Event> events = eventRepository.findAllByInitiatorId(userId, PageRequest.of(from / size, size));
-        List<Long> ids = events.stream().map(Event::getId).collect(Collectors.toList());
-        Map<Long, Long> confirmedRequests = requestRepository.findAllByEventIdInAndStatus(ids, CONFIRMED)
-                .stream()
-                .collect(Collectors.toMap(ConfirmedRequestsDto::getEvent, ConfirmedRequestsDto::getCount));
         return events.stream()
-                .map(event -> eventMapper.toEventShortDto(event, confirmedRequests.getOrDefault(event.getId(), 0L)))
+                .map(eventMapper::toEventShortDto)
                 .collect(Collectors.toList());
     }
 
@@ -208,7 +207,7 @@ public class EventServiceImpl implements EventService {
     public EventFullDto getEventByOwner(Long userId, Long eventId) {
         Event event = checkAndReturnEvent(eventId);
         if (event.getInitiator().getId() == userId) {
-            return eventMapper.modelToEventFullDto(event, requestRepository.countByEventIdAndStatus(eventId, CONFIRMED));
+            return eventMapper.modelToEventFullDto(event);
         } else {
             throw new NotFoundException("userId не верный");
         }
@@ -245,47 +244,30 @@ public class EventServiceImpl implements EventService {
         }
         List<Event> events = eventRepository.findAll(specification, PageRequest.of(from / size, size)).getContent();
         List<EventViewsFullDto> result = new ArrayList<>();
-        List<String> uris = events.stream()
-                .map(event -> String.format("/events/%s", event.getId()))
-                .collect(Collectors.toList());
-        LocalDateTime start = events.stream()
-                .map(Event::getCreatedOn)
-                .min(LocalDateTime::compareTo)
-                .orElseThrow(() -> new NotFoundException("Start not found"));
-        ResponseEntity<Object> response = statsClient.getStats(start, LocalDateTime.now(), uris, true);
-
-        List<Long> ids = events.stream().map(Event::getId).collect(Collectors.toList());
-        Map<Long, Long> confirmedRequests = requestRepository.findAllByEventIdInAndStatus(ids, CONFIRMED).stream()
-                .collect(Collectors.toMap(ConfirmedRequestsDto::getEvent, ConfirmedRequestsDto::getCount));
+        Map<Long, Long> views = viewService.getViews(events);
         for (Event event : events) {
-            List<ViewStatsDto> statsDto = objectMapper.convertValue(response.getBody(), new TypeReference<>() {
-            });
-            if (!statsDto.isEmpty()) {
-                result.add(eventMapper.toEventFullDtoWithViews(event, statsDto.getFirst().getHits(),
-                        confirmedRequests.getOrDefault(event.getId(), 0L)));
-            } else {
-                result.add(eventMapper.toEventFullDtoWithViews(event, 0L,
-                        confirmedRequests.getOrDefault(event.getId(), 0L)));
-            }
+            result.add(eventMapper.toEventFullDtoWithViews(event, views.get(event.getId())));
         }
         return result;
     }
 
     @Override
     @Transactional(readOnly = true)
-    public List<EventViewsShortDto> getEvents(String text, List<Long> categories, Boolean paid, LocalDateTime rangeStart,
-                                              LocalDateTime rangeEnd, Boolean onlyAvailable, String sort, Integer from,
-                                              Integer size, HttpServletRequest request) {
+    public CursorPage<EventViewsShortDto> getEvents(String text, List<Long> categories, Boolean paid,
+                                                    LocalDateTime rangeStart, LocalDateTime rangeEnd,
+                                                    Boolean onlyAvailable, String sort, Integer from, Integer size,
+                                                    String cursor, HttpServletRequest request) {
         if (rangeStart != null && rangeEnd != null && rangeStart.isAfter(rangeEnd)) {
             throw new BadRequestException("Incorrectly made request, Start is after End");
         }
         Specification<Event> specification = Specification.where(null);
-        if (text != null) {
-            specification = specification.and((root, query, criteriaBuilder) ->
-                    criteriaBuilder.or(
-                            criteriaBuilder.like(criteriaBuilder.lower(root.get("annotation")), "%" + text.toLowerCase() + "%"),
-                            criteriaBuilder.like(criteriaBuilder.lower(root.get("description")), "%" + text.toLowerCase() + "%")
-                    ));
+        if (sort.equals("RELEVANCE")) {
+            if (text == null) {
+                throw new BadRequestException("Sort RELEVANCE requires text");
+            }
+            specification = specification.and(textSearch.matchingByRelevance(text));
+        } else if (text != null) {
+            specification = specification.and(textSearch.matching(text));
         }
         if (categories != null) {
             specification = specification.and((root, query, criteriaBuilder) ->
@@ -304,49 +286,43 @@ public class EventServiceImpl implements EventService {
                     criteriaBuilder.lessThan(root.get("eventDate"), rangeEnd));
         }
         if (onlyAvailable != null && onlyAvailable) {
-            specification = specification.and((root, query, criteriaBuilder) ->
-                    criteriaBuilder.greaterThanOrEqualTo(root.get("participantLimit"), 0));
+            specification = specification.and((root, query, criteriaBuilder) -> criteriaBuilder.or(
+                    criteriaBuilder.isNull(root.get("participantLimit")),
+                    criteriaBuilder.equal(root.get("participantLimit"), 0),
+                    criteriaBuilder.gt(root.get("participantLimit"), root.get("confirmedRequests"))));
         }
         specification = specification.and((root, query, criteriaBuilder) ->
                 criteriaBuilder.equal(root.get("state"), PUBLISHED));
-        PageRequest pageRequest;
+        Sort order;
         if (sort.equals("EVENT_DATE")) {
-            pageRequest = PageRequest.of(from / size, size, Sort.by("eventDate"));
+            order = Sort.by("eventDate", "id");
         } else if (sort.equals("VIEWS")) {
-            pageRequest = PageRequest.of(from / size, size, Sort.by("views").descending());
+            order = Sort.by("views").descending().and(Sort.by("id"));
+        } else if (sort.equals("RELEVANCE")) {
+            // ordered by the text search specification
+            order = Sort.unsorted();
         } else {
             throw new ValidationException("Unknown sort: " + sort);
         }
-        List<Event> events = eventRepository.findAll(specification, pageRequest).getContent();
+        long offset = (long) (from / size) * size;
+        if (cursor != null) {
+            specification = specification.and(afterCursor(sort, PageCursor.decode(cursor)));
+            offset = 0;
+        }
+        List<EventShortView> events = eventRepository.findShortViews(specification, order, offset, size);
         List<EventViewsShortDto> result = new ArrayList<>();
-        List<String> uris = events.stream()
-                .map(event -> String.format("/events/%s", event.getId()))
-                .collect(Collectors.toList());
-        LocalDateTime start = events.stream()
-                .map(Event::getCreatedOn)
-                .min(LocalDateTime::compareTo)
-                .orElseThrow(() -> new NotFoundException("Start not found"));
-        ResponseEntity<Object> response = statsClient.getStats(start, LocalDateTime.now(), uris, true);
-        System.out.println(response.getBody());
-        List<Long> ids = events.stream().map(Event::getId).collect(Collectors.toList());
-        Map<Long, Long> confirmedRequests = requestRepository.findAllByEventIdInAndStatus(ids, CONFIRMED)
-                .stream()
-                .collect(Collectors.toMap(ConfirmedRequestsDto::getEvent, ConfirmedRequestsDto::getCount));
-        for (Event event : events) {
-            List<ViewStatsDto> statsDto = objectMapper.convertValue(response.getBody(), new TypeReference<>() {
-            });
-            if (!statsDto.isEmpty()) {
-                result.add(eventMapper.toEventShortDtoWithViews(event, statsDto.getFirst().getHits(),
-                        confirmedRequests.getOrDefault(event.getId(), 0L)));
-            } else {
-                result.add(eventMapper.toEventShortDtoWithViews(event, 0L,
-                        confirmedRequests.getOrDefault(event.getId(), 0L)));
-            }
+        Map<Long, LocalDateTime> eventCreatedOn = new HashMap<>();
+        for (EventShortView event : events) {
+            eventCreatedOn.put(event.id(), event.createdOn());
+        }
+        Map<Long, Long> views = viewService.getViews(eventCreatedOn);
+        for (EventShortView event : events) {
+            result.add(eventMapper.toEventShortDtoWithViews(event, views.get(event.id())));
         }
         EndpointHitDto endpointHitDto = new EndpointHitDto(app, request.getRequestURI(), request.getRemoteAddr(),
                 LocalDateTime.now());
-        statsClient.save(endpointHitDto);
-        return result;
+        statsClient.report(endpointHitDto);
+        return new CursorPage<>(result, nextCursor(sort, events, size));
     }
 
     @Override
@@ -356,24 +332,40 @@ public class EventServiceImpl implements EventService {
         if (event.getState() != PUBLISHED) {
             throw new NotFoundException("Event is not PUBLISHED");
         }
-        ResponseEntity<Object> response = statsClient.getStats(event.getCreatedOn(), LocalDateTime.now(),
-                List.of(request.getRequestURI()), true);
-        List<ViewStatsDto> statsDto = objectMapper.convertValue(response.getBody(), new TypeReference<>() {
-        });
-        EventViewsFullDto result;
-        if (!statsDto.isEmpty()) {
-            result = eventMapper.toEventFullDtoWithViews(event, statsDto.getFirst().getHits(),
-                    requestRepository.countByEventIdAndStatus(eventId, CONFIRMED));
-        } else {
-            result = eventMapper.toEventFullDtoWithViews(event, 0L,
-                    requestRepository.countByEventIdAndStatus(eventId, CONFIRMED));
-        }
+        EventViewsFullDto result = eventMapper.toEventFullDtoWithViews(event, viewService.getViews(event));
         EndpointHitDto endpointHitDto = new EndpointHitDto(app, request.getRequestURI(), request.getRemoteAddr(),
                 LocalDateTime.now());
-        statsClient.save(endpointHitDto);
+        statsClient.report(endpointHitDto);
         return result;
     }
 
+    /**
+     * Events after the last event of the previous page in the order of {@code sort}, ties broken by id.
+     */
+    private Specification<Event> afterCursor(String sort, PageCursor cursor) {
+        if (sort.equals("EVENT_DATE")) {
+            LocalDateTime eventDate = cursor.dateTimeKey();
+            return (root, query, criteriaBuilder) -> criteriaBuilder.or(
+                    criteriaBuilder.greaterThan(root.get("eventDate"), eventDate),
+                    criteriaBuilder.and(criteriaBuilder.equal(root.get("eventDate"), eventDate),
+                            criteriaBuilder.greaterThan(root.get("id"), cursor.id())));
+        }
+        throw new BadRequestException("Sort " + sort + " does not support cursor paging");
+    }
+
+    /**
+     * Only EVENT_DATE pages by cursor. VIEWS orders by {@code events.views}, which EventViewsSync rewrites while
+     * clients page, so a cursor over it could skip or repeat events; VIEWS keeps offset paging and its order is
+     * approximate, as of the last sync.
+     */
+    private String nextCursor(String sort, List<EventShortView> events, int size) {
+        if (events.size() < size || !sort.equals("EVENT_DATE")) {
+            return null;
+        }
+        EventShortView last = events.getLast();
+        return new PageCursor(last.eventDate().toString(), last.id()).encode();
+    }
+
     private void validateEventTime(LocalDateTime eventTime) {
         if (eventTime.isBefore(LocalDateTime.now().plusHours(2))) {
             throw new ForbiddenException(" должно содержать дату, которая еще не наступила. Value: " + eventTime);
@@ -0,0 +1,23 @@
+package ewm.paging;
+
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+
+/**
+ * A page of a listing and the cursor of the page after it, null if this is the last page or the listing
+ * cannot be paged by cursor.
+ */
+public record CursorPage<T>(List<T> items, String nextCursor) {
+
+    /**
+     * The items as body, the next cursor as {@link PageCursor#NEXT_CURSOR_HEADER} header.
+     */
+    public ResponseEntity<List<T>> toResponseEntity() {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (nextCursor != null) {
+            response.header(PageCursor.NEXT_CURSOR_HEADER, nextCursor);
+        }
+        return response.body(items);
+    }
+}
@@ -0,0 +1,44 @@
+package ewm.paging;
+
+import ewm.exception.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Continuation token of keyset paging: the sort key and the id of the last row of a page. The next page
+ * starts right after that row, so it costs the same however deep it is and does not shift when rows are
+ * inserted before it. Clients get the token in the {@value #NEXT_CURSOR_HEADER} header and must not parse it.
+ */
+public record PageCursor(String key, long id) {
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final char SEPARATOR = '|';
+
+    public static PageCursor decode(String token) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = value.lastIndexOf(SEPARATOR);
+            if (separator < 0) {
+                throw new BadRequestException("Invalid cursor: " + token);
+            }
+            return new PageCursor(value.substring(0, separator), Long.parseLong(value.substring(separator + 1)));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid cursor: " + token);
+        }
+    }
+
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((key + SEPARATOR + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public LocalDateTime dateTimeKey() {
+        try {
+            return LocalDateTime.parse(key);
+        } catch (DateTimeParseException e) {
+            throw new BadRequestException("Invalid cursor for this sort");
+        }
+    }
+}
@@ -1,9 +1,6 @@
 package ewm.requests;
 
-import ewm.requests.dto.ConfirmedRequestsDto;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Query;
-import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 
@@ -17,12 +14,4 @@ public interface RequestRepository extends JpaRepository<Request, Long> {
     List<Request> findAllByEventIdAndIdInAndStatus(Long eventId, List<Long> requestId, RequestStatus status);
 
     Boolean existsByRequesterIdAndEventId(Long userId, Long eventId);
-
-    Long countByEventIdAndStatus(Long eventId, RequestStatus status);
-
-    @Query("SELECT new ewm.requests.dto.ConfirmedRequestsDto(COUNT(DISTINCT r.id), r.event.id) " +
-            "FROM Request AS r " +
-            "WHERE r.event.id IN (:ids) AND r.status = :status " +
-            "GROUP BY (r.event)")
-    List<ConfirmedRequestsDto> findAllByEventIdInAndStatus(@Param("ids") List<Long> ids, @Param("status") RequestStatus status);
 }
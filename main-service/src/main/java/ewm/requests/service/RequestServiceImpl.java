@@ -49,8 +49,7 @@ public class RequestServiceImpl implements RequestService {
         if (!event.getState().equals(State.PUBLISHED)) {
             throw new ForbiddenException("Participation is possible only in published event.");
         }
-        if (event.getParticipantLimit() != 0 && event.getParticipantLimit() <=
-                requestRepository.countByEventIdAndStatus(eventId, CONFIRMED)) {
+        if (event.getParticipantLimit() != 0 && event.getParticipantLimit() <= event.getConfirmedRequests()) {
             throw new ForbiddenException("Participant limit has been reached.");
         }
         Request request = new Request();
@@ -61,6 +60,7 @@ public class RequestServiceImpl implements RequestService {
         if (event.getRequestModeration() && event.getParticipantLimit() != 0) {
             request.setStatus(PENDING);
         } else {
+            confirm(eventId, 1);
             request.setStatus(CONFIRMED);
         }
         return requestMapper.modelToDto(requestRepository.save(request));
@@ -75,7 +75,7 @@ public class RequestServiceImpl implements RequestService {
         if (!event.getInitiator().equals(initiator)) {
             throw new ValidationException("User isn't initiator.");
         }
-        long confirmedRequests = requestRepository.countByEventIdAndStatus(eventId, CONFIRMED);
+        long confirmedRequests = event.getConfirmedRequests();
         if (event.getParticipantLimit() > 0 && event.getParticipantLimit() <= confirmedRequests) {
             throw new ForbiddenException("The participant limit has been reached.");
         }
@@ -98,12 +98,18 @@ public class RequestServiceImpl implements RequestService {
                 rejected.add(requestMapper.modelToDto(request));
             }
         }
+        if (!confirmed.isEmpty()) {
+            confirm(eventId, confirmed.size());
+        }
         return new EventRequestStatusUpdateResult(confirmed, rejected);
     }
 
     @Override
     public RequestDto cancelRequest(Long userId, Long requestId) {
         Request request = requestRepository.findByIdAndRequesterId(requestId, userId);
+        if (request.getStatus() == CONFIRMED) {
+            eventRepository.addConfirmedRequests(request.getEvent().getId(), -1);
+        }
         request.setStatus(RequestStatus.CANCELED);
 
         return requestMapper.modelToDto(requestRepository.save(request));
@@ -127,5 +133,13 @@ public class RequestServiceImpl implements RequestService {
                 .map(requestMapper::modelToDto).toList();
     }
 
-
+    /**
+     * Counts {@code count} more confirmed requests of the event, fails if that would exceed its participant
+     * limit because of requests confirmed concurrently.
+     */
+    private void confirm(long eventId, int count) {
+        if (eventRepository.addConfirmedRequests(eventId, count) == 0) {
+            throw new ForbiddenException("The participant limit has been reached.");
+        }
+    }
 }
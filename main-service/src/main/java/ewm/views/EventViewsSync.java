@@ -0,0 +1,93 @@
+package ewm.views;
+
+import ewm.events.Event;
+import ewm.events.EventRepository;
+import ewm.views.service.ViewService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static ewm.events.enums.State.PUBLISHED;
+
+/**
+ * Copies view counts into {@code events.views} so that events can be sorted by views in the database. With the
+ * change feed only the changed counts are written. Otherwise the counts of published events are pulled, at most
+ * {@code ewm.views.sync-max-events} per run: each run goes on after the last event of the previous one and
+ * starts over after the last published event.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EventViewsSync {
+    private static final Pattern EVENT_URI = Pattern.compile("/events/(\\d+)");
+
+    private final EventRepository eventRepository;
+    private final ViewService viewService;
+    private final Optional<ViewFeedSubscriber> feed;
+
+    @Value("${ewm.views.sync-batch-size:100}")
+    private int batchSize;
+    @Value("${ewm.views.sync-max-events:1000}")
+    private int maxEventsPerRun;
+    private long lastSyncedId;
+
+    @Scheduled(fixedDelayString = "${ewm.views.sync-interval-ms:10000}")
+    public void sync() {
+        int updated = feed.isPresent() ? syncChanges(feed.get()) : syncPublished();
+        if (updated > 0) {
+            log.debug("Updated views of {} events", updated);
+        }
+    }
+
+    private int syncChanges(ViewFeedSubscriber subscriber) {
+        Map<String, Long> unapplied = subscriber.drainChanges();
+        int updated = 0;
+        try {
+            Iterator<Map.Entry<String, Long>> changes = unapplied.entrySet().iterator();
+            while (changes.hasNext()) {
+                Map.Entry<String, Long> change = changes.next();
+                Matcher matcher = EVENT_URI.matcher(change.getKey());
+                if (matcher.matches()) {
+                    updated += eventRepository.updateViews(Long.parseLong(matcher.group(1)), change.getValue());
+                }
+                changes.remove();
+            }
+        } finally {
+            if (!unapplied.isEmpty()) {
+                subscriber.requeueChanges(unapplied);
+            }
+        }
+        return updated;
+    }
+
+    private int syncPublished() {
+        int updated = 0;
+        int synced = 0;
+        while (synced < maxEventsPerRun) {
+            int pageSize = Math.min(batchSize, maxEventsPerRun - synced);
+            List<Event> events = eventRepository.findAllByStateAndIdGreaterThanOrderById(PUBLISHED, lastSyncedId,
+                    PageRequest.of(0, pageSize));
+            for (Map.Entry<Long, Long> views : viewService.getViews(events).entrySet()) {
+                updated += eventRepository.updateViews(views.getKey(), views.getValue());
+            }
+            synced += events.size();
+            if (events.size() < pageSize) {
+                // past the last published event, the next run starts over
+                lastSyncedId = 0;
+                break;
+            }
+            lastSyncedId = events.getLast().getId();
+        }
+        return updated;
+    }
+}
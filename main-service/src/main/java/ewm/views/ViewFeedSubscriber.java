@@ -0,0 +1,132 @@
+package ewm.views;
+
+import client.StatsClient;
+import dto.ViewFeedDto;
+import dto.ViewStatsDto;
+import ewm.events.EventRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a local copy of unique view counts per uri, replicated from the stats-server change feed. Reads are
+ * only served from it while the last successful poll is at most {@code ewm.views.feed.max-lag-ms} old.
+ * <p>
+ * Counts start at the creation of the oldest event, or at startup when there is none: schema.sql recreates
+ * the events table on start, so event ids and with them uris are reused, and older hits of a uri belong to
+ * an earlier event.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "ewm.views.feed.enabled", havingValue = "true")
+public class ViewFeedSubscriber {
+    private final StatsClient statsClient;
+    private final EventRepository eventRepository;
+    private volatile Map<String, Long> views = new ConcurrentHashMap<>();
+    private final Map<String, Long> changes = new ConcurrentHashMap<>();
+    private volatile long syncedAt;
+    private volatile boolean running = true;
+    private Thread poller;
+    private LocalDateTime start;
+
+    @Value("${ewm.views.feed.wait-ms:2000}")
+    private long waitMs;
+    @Value("${ewm.views.feed.retry-ms:1000}")
+    private long retryMs;
+    @Value("${ewm.views.feed.max-lag-ms:5000}")
+    private long maxLagMs;
+
+    @PostConstruct
+    void start() {
+        LocalDateTime earliest = eventRepository.findEarliestCreatedOn();
+        start = earliest != null ? earliest : LocalDateTime.now();
+        poller = new Thread(this::run, "view-feed");
+        poller.setDaemon(true);
+        poller.start();
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        poller.interrupt();
+    }
+
+    public boolean isLive() {
+        long synced = syncedAt;
+        return synced != 0 && System.nanoTime() - synced < TimeUnit.MILLISECONDS.toNanos(maxLagMs);
+    }
+
+    public long getViews(String uri) {
+        return views.getOrDefault(uri, 0L);
+    }
+
+    /**
+     * Returns the counts that changed since the previous call, all of them after a snapshot.
+     */
+    public Map<String, Long> drainChanges() {
+        Map<String, Long> drained = new HashMap<>();
+        for (String uri : changes.keySet()) {
+            Long count = changes.remove(uri);
+            if (count != null) {
+                drained.put(uri, count);
+            }
+        }
+        return drained;
+    }
+
+    /**
+     * Puts back drained changes that could not be applied. A newer count of the same uri drained meanwhile
+     * wins.
+     */
+    public void requeueChanges(Map<String, Long> unapplied) {
+        unapplied.forEach(changes::putIfAbsent);
+    }
+
+    private void run() {
+        String epoch = null;
+        long sequence = 0;
+        while (running) {
+            try {
+                ViewFeedDto feed = statsClient.pollViewFeed(epoch, sequence, waitMs, start);
+                apply(feed);
+                epoch = feed.getEpoch();
+                sequence = feed.getSequence();
+                syncedAt = System.nanoTime();
+            } catch (RestClientException e) {
+                log.warn("Failed to poll view feed: {}", e.getMessage());
+                try {
+                    Thread.sleep(retryMs);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void apply(ViewFeedDto feed) {
+        // one row per app and uri
+        Map<String, Long> changed = new HashMap<>();
+        for (ViewStatsDto stats : feed.getViews()) {
+            changed.merge(stats.getUri(), stats.getHits(), Long::sum);
+        }
+        if (feed.isSnapshot()) {
+            log.info("View feed snapshot of {} uris at {}/{}", changed.size(), feed.getEpoch(), feed.getSequence());
+            views = new ConcurrentHashMap<>(changed);
+        } else {
+            views.putAll(changed);
+        }
+        changes.putAll(changed);
+    }
+}
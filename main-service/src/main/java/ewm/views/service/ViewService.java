@@ -0,0 +1,21 @@
+package ewm.views.service;
+
+import ewm.events.Event;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+public interface ViewService {
+    /**
+     * Unique views per event id.
+     */
+    Map<Long, Long> getViews(List<Event> events);
+
+    /**
+     * Unique views per event id, for events given as event id to creation time.
+     */
+    Map<Long, Long> getViews(Map<Long, LocalDateTime> eventCreatedOn);
+
+    long getViews(Event event);
+}
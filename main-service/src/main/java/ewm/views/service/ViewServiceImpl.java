@@ -0,0 +1,188 @@
+package ewm.views.service;
+
+import client.StatsClient;
+import client.ViewCounts;
+import ewm.events.Event;
+import ewm.views.ViewFeedSubscriber;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Caches view counts for {@code ewm.views.ttl-ms}. Concurrent misses for the same event share one fetch, and
+ * misses for different events within {@code ewm.views.batch-window-ms} are fetched with a single /stats call.
+ * A count only depends on the event, since an event's uri can't be hit before the event is created, so the
+ * batched call asks for the range from the earliest creation time in the batch.
+ *
+ * <p>While the {@link ViewFeedSubscriber} is enabled and up to date, counts are read from it instead.
+ */
+@Service
+@RequiredArgsConstructor
+public class ViewServiceImpl implements ViewService {
+    private static final String EVENT_URI = "/events/%s";
+
+    private final StatsClient statsClient;
+    private final Optional<ViewFeedSubscriber> feed;
+    private final Map<Long, CachedViews> cache = new ConcurrentHashMap<>();
+    private final Map<Long, CompletableFuture<Long>> inFlight = new ConcurrentHashMap<>();
+    private final Object lock = new Object();
+    private List<PendingFetch> pending = new ArrayList<>();
+    private ScheduledExecutorService fetcher;
+
+    @Value("${ewm.views.ttl-ms:2000}")
+    private long ttlMs;
+    @Value("${ewm.views.batch-window-ms:5}")
+    private long batchWindowMs;
+    @Value("${ewm.views.max-batch-size:100}")
+    private int maxBatchSize;
+    @Value("${ewm.views.max-size:100000}")
+    private int maxSize;
+    @Value("${ewm.views.fetch-threads:4}")
+    private int fetchThreads;
+
+    @PostConstruct
+    void start() {
+        AtomicInteger threads = new AtomicInteger();
+        fetcher = Executors.newScheduledThreadPool(fetchThreads, runnable -> {
+            Thread thread = new Thread(runnable, "view-count-fetch-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void stop() {
+        fetcher.shutdownNow();
+    }
+
+    @Override
+    public Map<Long, Long> getViews(List<Event> events) {
+        Map<Long, LocalDateTime> eventCreatedOn = new HashMap<>();
+        for (Event event : events) {
+            eventCreatedOn.put(event.getId(), event.getCreatedOn());
+        }
+        return getViews(eventCreatedOn);
+    }
+
+    @Override
+    public Map<Long, Long> getViews(Map<Long, LocalDateTime> eventCreatedOn) {
+        Map<Long, Long> views = new HashMap<>();
+        if (feed.isPresent() && feed.get().isLive()) {
+            for (Long eventId : eventCreatedOn.keySet()) {
+                views.put(eventId, feed.get().getViews(uri(eventId)));
+            }
+            return views;
+        }
+        Map<Long, CompletableFuture<Long>> misses = new HashMap<>();
+        long now = System.nanoTime();
+        eventCreatedOn.forEach((eventId, createdOn) -> {
+            CachedViews cached = cache.get(eventId);
+            if (cached != null && cached.expiresAt() - now > 0) {
+                views.put(eventId, cached.views());
+            } else {
+                misses.put(eventId, inFlight.computeIfAbsent(eventId, id -> enqueue(id, createdOn)));
+            }
+        });
+        misses.forEach((id, future) -> views.put(id, await(future)));
+        return views;
+    }
+
+    @Override
+    public long getViews(Event event) {
+        return getViews(List.of(event)).get(event.getId());
+    }
+
+    private CompletableFuture<Long> enqueue(long eventId, LocalDateTime createdOn) {
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        synchronized (lock) {
+            pending.add(new PendingFetch(eventId, createdOn, future));
+            if (pending.size() == 1) {
+                fetcher.schedule(this::flush, batchWindowMs, TimeUnit.MILLISECONDS);
+            } else if (pending.size() == maxBatchSize) {
+                fetcher.execute(this::flush);
+            }
+        }
+        return future;
+    }
+
+    private void flush() {
+        List<PendingFetch> batch;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new ArrayList<>();
+        }
+        for (int from = 0; from < batch.size(); from += maxBatchSize) {
+            fetch(batch.subList(from, Math.min(from + maxBatchSize, batch.size())));
+        }
+        if (cache.size() > maxSize) {
+            long now = System.nanoTime();
+            cache.values().removeIf(cached -> cached.expiresAt() - now <= 0);
+        }
+    }
+
+    private void fetch(List<PendingFetch> batch) {
+        try {
+            List<String> uris = batch.stream().map(fetch -> uri(fetch.eventId())).toList();
+            LocalDateTime start = batch.stream()
+                    .map(PendingFetch::createdOn)
+                    .min(Comparator.naturalOrder())
+                    .orElseThrow();
+            ViewCounts counts = statsClient.getViews(start, LocalDateTime.now(), uris, true);
+            long expiresAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttlMs);
+            for (PendingFetch fetch : batch) {
+                long views = counts.get(uri(fetch.eventId()));
+                if (!counts.stale()) {
+                    cache.put(fetch.eventId(), new CachedViews(views, expiresAt));
+                }
+                inFlight.remove(fetch.eventId());
+                fetch.future().complete(views);
+            }
+        } catch (RuntimeException e) {
+            for (PendingFetch fetch : batch) {
+                inFlight.remove(fetch.eventId());
+                fetch.future().completeExceptionally(e);
+            }
+        }
+    }
+
+    private static long await(CompletableFuture<Long> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static String uri(long eventId) {
+        return String.format(EVENT_URI, eventId);
+    }
+
+    private record CachedViews(long views, long expiresAt) {
+    }
+
+    private record PendingFetch(long eventId, LocalDateTime createdOn, CompletableFuture<Long> future) {
+    }
+}
@@ -39,9 +39,15 @@ CREATE TABLE IF NOT EXISTS events(
     published_on       TIMESTAMP,
     request_moderation BOOLEAN,
     state              VARCHAR(10),
-    title              VARCHAR(120) NOT NULL
+    title              VARCHAR(120) NOT NULL,
+    views              BIGINT NOT NULL DEFAULT 0,
+    confirmed_requests BIGINT NOT NULL DEFAULT 0
 );
 
+CREATE INDEX IF NOT EXISTS events_state_views_idx ON events (state, views DESC, id);
+-- keyset paging of GET /events?sort=EVENT_DATE
+CREATE INDEX IF NOT EXISTS events_state_event_date_idx ON events (state, event_date, id);
+
 CREATE TABLE IF NOT EXISTS compilations(
     id     INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
     pinned BOOLEAN,
@@ -71,3 +77,6 @@ CREATE TABLE IF NOT EXISTS comments (
     edited    TIMESTAMP,
     confirmed_requests INTEGER
 );
+
+-- keyset paging of comments of an event
+CREATE INDEX IF NOT EXISTS comments_event_id_idx ON comments (event_id, id);
@@ -0,0 +1,106 @@
+package ewm.events;
+
+import ewm.categories.Category;
+import ewm.events.enums.State;
+import ewm.locations.Location;
+import ewm.user.User;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Counts the statements of event listings, the mapper reads category, initiator and location of every event.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class EventRepositoryStatementsTest {
+    private static final int EVENTS = 5;
+
+    @Autowired
+    private EventRepository repository;
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    private Statistics statistics;
+    private User initiator;
+
+    /**
+     * The application class scans the stats client too, so the slice gets its own configuration.
+     */
+    @Configuration
+    @EntityScan("ewm")
+    @EnableJpaRepositories("ewm")
+    static class JpaConfig {
+    }
+
+    @BeforeEach
+    void persistEvents() {
+        initiator = entityManager.persist(User.builder().name("initiator").email("initiator@mail.ru").build());
+        for (int i = 0; i < EVENTS; i++) {
+            Category category = entityManager.persist(Category.builder().name("category " + i).build());
+            Location location = entityManager.persist(Location.builder().lat(55f + i).lon(37f).build());
+            entityManager.persist(Event.builder()
+                    .annotation("annotation " + i)
+                    .category(category)
+                    .createdOn(LocalDateTime.now())
+                    .description("description")
+                    .eventDate(LocalDateTime.now().plusDays(i + 1))
+                    .initiator(initiator)
+                    .location(location)
+                    .paid(false)
+                    .participantLimit(0)
+                    .requestModeration(true)
+                    .state(State.PUBLISHED)
+                    .title("title " + i)
+                    .build());
+        }
+        entityManager.flush();
+        entityManager.clear();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void eventsOfInitiatorAreListedWithOneStatement() {
+        List<Event> events = repository.findAllByInitiatorId(initiator.getId(), PageRequest.of(0, 10));
+        events.forEach(EventRepositoryStatementsTest::readAssociations);
+
+        assertThat(events).hasSize(EVENTS);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void searchedEventsAreListedWithPageAndCountStatements() {
+        Page<Event> events = repository.findAll((root, query, builder) ->
+                builder.equal(root.get("state"), State.PUBLISHED), PageRequest.of(0, 2));
+        events.forEach(EventRepositoryStatementsTest::readAssociations);
+
+        assertThat(events.getTotalElements()).isEqualTo(EVENTS);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    private static void readAssociations(Event event) {
+        event.getCategory().getName();
+        event.getInitiator().getName();
+        event.getLocation().getLat();
+    }
+}
@@ -0,0 +1,90 @@
+package client;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops calls to stats-server after {@code failureThreshold} consecutive failures. After {@code openMs} one
+ * probe call is let through (half-open); its outcome closes the breaker or opens it for another period.
+ */
+@Slf4j
+class CircuitBreaker {
+    enum State {
+        CLOSED,
+        HALF_OPEN,
+        OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+    private boolean probing;
+
+    CircuitBreaker(int failureThreshold, long openMs, MeterRegistry meterRegistry) {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMs);
+        Gauge.builder("stats.client.circuit.state", this, breaker -> breaker.state().ordinal())
+                .description("0 - closed, 1 - half-open, 2 - open")
+                .register(meterRegistry);
+    }
+
+    synchronized State state() {
+        return state;
+    }
+
+    synchronized boolean isClosed() {
+        return state == State.CLOSED;
+    }
+
+    /**
+     * Returns true if a call may be made now. Once the open period is over this also admits the probe call,
+     * so callers that cannot afford to wait for a possibly slow server should check {@link #isClosed()}.
+     */
+    synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.nanoTime() - openedAt < openNanos) {
+                    return false;
+                }
+                moveTo(State.HALF_OPEN);
+                probing = true;
+                return true;
+            default:
+                if (probing) {
+                    return false;
+                }
+                probing = true;
+                return true;
+        }
+    }
+
+    synchronized void onSuccess() {
+        failures = 0;
+        probing = false;
+        if (state != State.CLOSED) {
+            moveTo(State.CLOSED);
+        }
+    }
+
+    synchronized void onFailure() {
+        probing = false;
+        if (state == State.HALF_OPEN || ++failures >= failureThreshold) {
+            openedAt = System.nanoTime();
+            if (state != State.OPEN) {
+                moveTo(State.OPEN);
+            }
+        }
+    }
+
+    private void moveTo(State next) {
+        log.info("Stats server circuit breaker {} -> {}", state, next);
+        state = next;
+    }
+}
@@ -0,0 +1,244 @@
+package client;
+
+import dto.EndpointHitDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Buffers hits in a bounded queue and sends them to stats-server in batches from a single background
+ * thread, so callers never wait for the stats server. A batch goes out when {@code batchSize} hits have
+ * been collected or {@code flushIntervalMs} has passed since its first hit.
+ *
+ * <p>What happens to a hit that does not fit into the queue, or to a batch the server did not accept,
+ * is decided by {@link Overflow}. Spooled hits are replayed in batches between regular batches; after a
+ * failed replay the next attempt waits twice as long as the previous one (with jitter), from
+ * {@code retryInitialMs} up to {@code retryMaxMs}, so a recovering server is not hit by the whole backlog
+ * of every client at once.
+ */
+@Slf4j
+class HitReporter {
+    enum Overflow {
+        /**
+         * Forget the hits.
+         */
+        DROP,
+        /**
+         * Append the hits to a spool file and resend them once the server accepts batches again.
+         */
+        SPILL
+    }
+
+    private final BlockingQueue<EndpointHitDto> queue;
+    private final Predicate<List<EndpointHitDto>> batchSender;
+    private final HitSpillFile spillFile;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final long aggregateSeconds;
+    private final long retryInitialMs;
+    private final long retryMaxMs;
+    private final Counter sent;
+    private final Counter dropped;
+    private final Counter spilled;
+    private final Counter failures;
+    private final Thread sender;
+    private final Map<AggregateKey, Long> aggregated = new LinkedHashMap<>();
+    private volatile boolean running = true;
+    private long retryDelayMs;
+    private long nextReplayAt;
+
+    HitReporter(Predicate<List<EndpointHitDto>> batchSender, HitSpillFile spillFile, int capacity, int batchSize,
+                long flushIntervalMs, long aggregateSeconds, long retryInitialMs, long retryMaxMs,
+                MeterRegistry meterRegistry) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSender = batchSender;
+        this.spillFile = spillFile;
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.aggregateSeconds = aggregateSeconds;
+        this.retryInitialMs = retryInitialMs;
+        this.retryMaxMs = Math.max(retryInitialMs, retryMaxMs);
+        Gauge.builder("stats.client.queue.size", queue, BlockingQueue::size)
+                .description("Hits waiting to be sent to stats-server")
+                .register(meterRegistry);
+        this.sent = Counter.builder("stats.client.hits.sent").register(meterRegistry);
+        this.dropped = Counter.builder("stats.client.hits.dropped").register(meterRegistry);
+        this.spilled = Counter.builder("stats.client.hits.spilled").register(meterRegistry);
+        this.failures = Counter.builder("stats.client.send.failures").register(meterRegistry);
+        this.sender = new Thread(this::run, "stats-hit-reporter");
+        this.sender.setDaemon(true);
+    }
+
+    void start() {
+        sender.start();
+    }
+
+    /**
+     * Never blocks: the hit is queued, spilled or dropped right away.
+     */
+    void report(EndpointHitDto hit) {
+        if (!queue.offer(hit)) {
+            overflow(List.of(hit));
+        }
+    }
+
+    /**
+     * Stops the sender after it has sent what is already queued.
+     */
+    void close() throws InterruptedException {
+        running = false;
+        sender.interrupt();
+        sender.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    private void run() {
+        List<EndpointHitDto> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                EndpointHitDto first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    sendAggregated(false);
+                    replaySpilled();
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    EndpointHitDto hit = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (hit == null) {
+                        break;
+                    }
+                    batch.add(hit);
+                }
+            } catch (InterruptedException e) {
+                if (running) {
+                    Thread.currentThread().interrupt();
+                    running = false;
+                }
+            }
+            send(batch);
+            batch.clear();
+            replaySpilled();
+        }
+        Thread.interrupted();
+        queue.drainTo(batch);
+        send(batch);
+        sendAggregated(true);
+    }
+
+    private void send(List<EndpointHitDto> batch) {
+        if (aggregateSeconds > 0) {
+            aggregate(batch);
+            sendAggregated(false);
+            return;
+        }
+        sendNow(batch);
+    }
+
+    private void sendNow(List<EndpointHitDto> hits) {
+        if (hits.isEmpty()) {
+            return;
+        }
+        if (batchSender.test(hits)) {
+            sent.increment(hits.size());
+        } else {
+            failures.increment();
+            overflow(hits);
+            backOff();
+        }
+    }
+
+    /**
+     * Merges hits of the same visitor to the same uri within {@code aggregateSeconds} into one weighted hit
+     * stamped with the start of that interval. The merged hits are kept across batches until their interval
+     * is over, see {@link #sendAggregated}. Total and unique counts stay exact, only timestamps move by less
+     * than the interval.
+     */
+    private void aggregate(List<EndpointHitDto> batch) {
+        for (EndpointHitDto hit : batch) {
+            long second = hit.getTimestamp().toEpochSecond(ZoneOffset.UTC);
+            long bucket = second - Math.floorMod(second, aggregateSeconds);
+            aggregated.merge(new AggregateKey(hit.getApp(), hit.getUri(), hit.getIp(), bucket),
+                    hit.getHits() != null ? hit.getHits() : 1, Long::sum);
+        }
+    }
+
+    /**
+     * Sends the merged hits of intervals that are over, in batches of {@code batchSize}. Everything goes out
+     * when {@code all} is set or more than {@code batchSize} hits of open intervals are held; a visitor whose
+     * interval is cut then just counts as two weighted hits in it.
+     */
+    private void sendAggregated(boolean all) {
+        long now = LocalDateTime.now().toEpochSecond(ZoneOffset.UTC);
+        boolean flushOpen = all || aggregated.size() > batchSize;
+        List<EndpointHitDto> hits = new ArrayList<>(Math.min(aggregated.size(), batchSize));
+        Iterator<Map.Entry<AggregateKey, Long>> entries = aggregated.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<AggregateKey, Long> entry = entries.next();
+            AggregateKey key = entry.getKey();
+            if (!flushOpen && key.bucket() + aggregateSeconds > now) {
+                continue;
+            }
+            hits.add(new EndpointHitDto(key.app(), key.uri(), key.ip(),
+                    LocalDateTime.ofEpochSecond(key.bucket(), 0, ZoneOffset.UTC), entry.getValue()));
+            entries.remove();
+            if (hits.size() == batchSize) {
+                sendNow(hits);
+                hits = new ArrayList<>(batchSize);
+            }
+        }
+        sendNow(hits);
+    }
+
+    private void overflow(List<EndpointHitDto> hits) {
+        if (spillFile != null && spillFile.append(hits)) {
+            spilled.increment(hits.size());
+        } else {
+            dropped.increment(hits.size());
+        }
+    }
+
+    private void replaySpilled() {
+        if (spillFile == null || spillFile.isEmpty() || !running || System.currentTimeMillis() < nextReplayAt) {
+            return;
+        }
+        if (spillFile.replay(batchSize, hits -> {
+            boolean accepted = batchSender.test(hits);
+            if (accepted) {
+                sent.increment(hits.size());
+            } else {
+                failures.increment();
+            }
+            return accepted;
+        })) {
+            retryDelayMs = 0;
+            nextReplayAt = 0;
+            return;
+        }
+        backOff();
+    }
+
+    private void backOff() {
+        retryDelayMs = retryDelayMs == 0 ? retryInitialMs : Math.min(retryDelayMs * 2, retryMaxMs);
+        long jitter = ThreadLocalRandom.current().nextLong(retryDelayMs / 2 + 1);
+        nextReplayAt = System.currentTimeMillis() + retryDelayMs / 2 + jitter;
+    }
+
+    private record AggregateKey(String app, String uri, String ip, long bucket) {
+    }
+}
@@ -0,0 +1,76 @@
+package client;
+
+import dto.EndpointHitDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.util.AntPathMatcher;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Deterministic 1-in-N sampling of hits per uri pattern, configured as {@code pattern=N} pairs separated by
+ * commas, e.g. {@code /events=10,/compilations/**=5}; the first matching pattern wins. Whether a hit is kept
+ * depends only on its ip, so a visitor is either always or never reported for a sampled uri, and a kept hit
+ * counts N times. Total hit counts stay unbiased; unique counts of sampled uris only cover about 1/N of the
+ * visitors, so sampling is meant for uris whose unique views nobody reads.
+ */
+class HitSampler {
+    private final Map<String, Integer> rates = new LinkedHashMap<>();
+    private final AntPathMatcher matcher = new AntPathMatcher();
+    private final Counter sampledOut;
+
+    HitSampler(String spec, MeterRegistry meterRegistry) {
+        for (String rule : spec.split(",")) {
+            if (rule.isBlank()) {
+                continue;
+            }
+            int separator = rule.lastIndexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Expected pattern=N in client.report.sampling: " + rule);
+            }
+            int rate = Integer.parseInt(rule.substring(separator + 1).trim());
+            if (rate < 1) {
+                throw new IllegalArgumentException("Sampling rate must be at least 1: " + rule);
+            }
+            rates.put(rule.substring(0, separator).trim(), rate);
+        }
+        this.sampledOut = Counter.builder("stats.client.hits.sampled.out").register(meterRegistry);
+    }
+
+    /**
+     * Returns the hit to report, weighted if sampled, or null if it is sampled out.
+     */
+    EndpointHitDto sample(EndpointHitDto hit) {
+        int rate = rateFor(hit.getUri());
+        if (rate == 1) {
+            return hit;
+        }
+        if (Math.floorMod(mix(hit.getIp().hashCode()), rate) != 0) {
+            sampledOut.increment();
+            return null;
+        }
+        long hits = hit.getHits() != null ? hit.getHits() : 1;
+        return new EndpointHitDto(hit.getApp(), hit.getUri(), hit.getIp(), hit.getTimestamp(), hits * rate);
+    }
+
+    private int rateFor(String uri) {
+        for (Map.Entry<String, Integer> rate : rates.entrySet()) {
+            if (matcher.match(rate.getKey(), uri)) {
+                return rate.getValue();
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Spreads similar ips (which differ in the last characters only) over all residues.
+     */
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        return hash ^ (hash >>> 16);
+    }
+}
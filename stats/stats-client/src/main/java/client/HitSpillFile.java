@@ -0,0 +1,267 @@
+package client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import dto.EndpointHitDto;
+import dto.HitBinaryCodec;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Append-only spool of hits that could not be queued or sent. Every append is one chunk: {@code [int length]
+ * [long appended at, epoch ms][length bytes of a HitBinaryCodec body]}. For replay the active file is renamed,
+ * so that spooling goes on while it is being sent; how far a renamed file has been sent is kept next to it,
+ * which keeps a replay interrupted by a failure or a restart from sending the same hits twice. A torn chunk at
+ * the end of a file (crash during append) is skipped.
+ * <p>
+ * Spill files of the earlier NDJSON format ({@code hits.ndjson} and its renamed {@code *-hits.ndjson.replay})
+ * are converted into the spool on start.
+ */
+@Slf4j
+class HitSpillFile {
+    private static final String ACTIVE = "hits.spool";
+    private static final String LEGACY_ACTIVE = "hits.ndjson";
+    private static final String REPLAY_SUFFIX = ".replay";
+    private static final String OFFSET_SUFFIX = ".offset";
+    private static final int CHUNK_HEADER = 4 + 8;
+
+    private final Path dir;
+    private final long maxBytes;
+    private volatile long backlogBytes;
+    private volatile long oldestAppendedAt;
+
+    HitSpillFile(Path dir, long maxBytes, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        migrateLegacyFiles(objectMapper.readerFor(EndpointHitDto.class));
+        scan();
+        Gauge.builder("stats.client.spool.bytes", this, spool -> spool.backlogBytes)
+                .description("Size of hits spooled to disk and not yet sent")
+                .register(meterRegistry);
+        Gauge.builder("stats.client.spool.age.seconds", this, HitSpillFile::ageSeconds)
+                .description("Age of the oldest spooled hit batch")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Appends the hits, returns false when the spool is full or not writable.
+     */
+    synchronized boolean append(List<EndpointHitDto> hits) {
+        byte[] body = HitBinaryCodec.encode(hits);
+        if (backlogBytes + CHUNK_HEADER + body.length > maxBytes) {
+            return false;
+        }
+        try {
+            write(body);
+        } catch (IOException e) {
+            log.warn("Failed to spool {} hits to {}", hits.size(), dir.toAbsolutePath(), e);
+            return false;
+        }
+        return true;
+    }
+
+    private void write(byte[] body) throws IOException {
+        long now = System.currentTimeMillis();
+        ByteBuffer chunk = ByteBuffer.allocate(CHUNK_HEADER + body.length)
+                .putInt(body.length)
+                .putLong(now)
+                .put(body)
+                .flip();
+        Files.createDirectories(dir);
+        try (FileChannel channel = FileChannel.open(dir.resolve(ACTIVE), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            while (chunk.hasRemaining()) {
+                channel.write(chunk);
+            }
+        }
+        backlogBytes += CHUNK_HEADER + body.length;
+        if (oldestAppendedAt == 0) {
+            oldestAppendedAt = now;
+        }
+    }
+
+    boolean isEmpty() {
+        return backlogBytes == 0;
+    }
+
+    /**
+     * Hands the spooled hits to {@code sender} oldest first, in batches of at least {@code batchSize} hits (or
+     * whatever is left). Returns false if a batch was not accepted; it is sent again by the next replay.
+     */
+    boolean replay(int batchSize, Predicate<List<EndpointHitDto>> sender) {
+        try {
+            synchronized (this) {
+                Path active = dir.resolve(ACTIVE);
+                if (Files.exists(active)) {
+                    Files.move(active, dir.resolve(System.currentTimeMillis() + "-" + ACTIVE + REPLAY_SUFFIX));
+                }
+            }
+            for (Path file : replayFiles()) {
+                if (!replay(file, batchSize, sender)) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            log.warn("Failed to replay spooled hits from {}", dir.toAbsolutePath(), e);
+            return false;
+        } finally {
+            scan();
+        }
+    }
+
+    private boolean replay(Path file, int batchSize, Predicate<List<EndpointHitDto>> sender) throws IOException {
+        Path offsetFile = offsetFile(file);
+        long offset = readOffset(offsetFile);
+        List<EndpointHitDto> batch = new ArrayList<>(batchSize);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(CHUNK_HEADER);
+            long position = offset;
+            while (size - position >= CHUNK_HEADER) {
+                header.clear();
+                channel.read(header, position);
+                int length = header.getInt(0);
+                if (length < 0 || length > size - position - CHUNK_HEADER) {
+                    log.warn("Skipping torn chunk at {} of {}", position, file);
+                    break;
+                }
+                ByteBuffer body = ByteBuffer.allocate(length);
+                long bodyStart = position + CHUNK_HEADER;
+                while (body.hasRemaining()) {
+                    if (channel.read(body, bodyStart + body.position()) < 0) {
+                        throw new EOFException("Unexpected end of " + file);
+                    }
+                }
+                try {
+                    HitBinaryCodec.Reader reader = HitBinaryCodec.reader(new ByteArrayInputStream(body.array()));
+                    EndpointHitDto hit;
+                    while ((hit = reader.next()) != null) {
+                        batch.add(hit);
+                    }
+                } catch (StreamCorruptedException e) {
+                    log.warn("Skipping corrupted chunk at {} of {}: {}", position, file, e.getMessage());
+                }
+                position += CHUNK_HEADER + length;
+                if (batch.size() >= batchSize) {
+                    if (!sender.test(batch)) {
+                        return false;
+                    }
+                    batch = new ArrayList<>(batchSize);
+                    Files.writeString(offsetFile, Long.toString(position));
+                }
+            }
+        }
+        if (!batch.isEmpty() && !sender.test(batch)) {
+            return false;
+        }
+        Files.delete(file);
+        Files.deleteIfExists(offsetFile);
+        return true;
+    }
+
+    /**
+     * Appends the hits of every NDJSON spill file to the spool and deletes the file, oldest first. The size
+     * limit is not applied, these hits were already accepted for spilling. A torn last line is skipped.
+     */
+    private synchronized void migrateLegacyFiles(ObjectReader reader) {
+        try {
+            List<Path> files = new ArrayList<>(listFiles(LEGACY_ACTIVE + REPLAY_SUFFIX));
+            Path active = dir.resolve(LEGACY_ACTIVE);
+            if (Files.exists(active)) {
+                files.add(active);
+            }
+            for (Path file : files) {
+                List<EndpointHitDto> hits = new ArrayList<>();
+                try (MappingIterator<EndpointHitDto> values = reader.readValues(file.toFile())) {
+                    while (values.hasNextValue()) {
+                        hits.add(values.nextValue());
+                    }
+                } catch (JsonProcessingException e) {
+                    log.warn("Skipping the rest of {} after {} hits: {}", file, hits.size(), e.getOriginalMessage());
+                }
+                if (!hits.isEmpty()) {
+                    write(HitBinaryCodec.encode(hits));
+                }
+                Files.delete(file);
+                log.info("Moved {} hits from {} to the spool", hits.size(), file);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to convert NDJSON spill files in {}", dir.toAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Recomputes the backlog size and the age of its oldest chunk from the files.
+     */
+    private synchronized void scan() {
+        long bytes = 0;
+        long oldest = 0;
+        try {
+            List<Path> files = new ArrayList<>(replayFiles());
+            Path active = dir.resolve(ACTIVE);
+            if (Files.exists(active)) {
+                files.add(active);
+            }
+            for (Path file : files) {
+                long offset = file.equals(active) ? 0 : readOffset(offsetFile(file));
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    bytes += Math.max(0, channel.size() - offset);
+                    ByteBuffer header = ByteBuffer.allocate(CHUNK_HEADER);
+                    if (oldest == 0 && channel.read(header, offset) == CHUNK_HEADER) {
+                        oldest = header.getLong(4);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to scan spooled hits in {}", dir.toAbsolutePath(), e);
+        }
+        backlogBytes = bytes;
+        oldestAppendedAt = oldest;
+    }
+
+    private double ageSeconds() {
+        long oldest = oldestAppendedAt;
+        return oldest == 0 ? 0 : (System.currentTimeMillis() - oldest) / 1000.0;
+    }
+
+    private List<Path> replayFiles() throws IOException {
+        return listFiles(ACTIVE + REPLAY_SUFFIX);
+    }
+
+    private List<Path> listFiles(String suffix) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(suffix))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static Path offsetFile(Path file) {
+        return file.resolveSibling(file.getFileName() + OFFSET_SUFFIX);
+    }
+
+    private static long readOffset(Path offsetFile) throws IOException {
+        return Files.exists(offsetFile) ? Long.parseLong(Files.readString(offsetFile).trim()) : 0;
+    }
+}
@@ -1,39 +1,208 @@
 package client;
 
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.datatype.jsr310.deser.LocalDateTimeDeserializer;
+import com.fasterxml.jackson.datatype.jsr310.ser.LocalDateTimeSerializer;
 import dto.EndpointHitDto;
-import org.apache.hc.client5.http.classic.HttpClient;
-import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
+import dto.HitBinaryCodec;
+import dto.ViewFeedDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.RequestEntity;
 import org.springframework.http.ResponseEntity;
-import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 
+@Slf4j
 @Service
 public class StatsClient {
+    static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final MediaType BINARY_HITS = MediaType.parseMediaType(HitBinaryCodec.MEDIA_TYPE);
+
     @Value("${client.url}")
     private String serverUrl;
+    @Value("${client.report.queue-capacity:10000}")
+    private int reportQueueCapacity;
+    @Value("${client.report.batch-size:500}")
+    private int reportBatchSize;
+    @Value("${client.report.flush-interval-ms:1000}")
+    private long reportFlushIntervalMs;
+    @Value("${client.report.overflow:DROP}")
+    private HitReporter.Overflow reportOverflow;
+    @Value("${client.report.spill-dir:stats-spill}")
+    private Path reportSpillDir;
+    @Value("${client.report.spill-max-mb:64}")
+    private long reportSpillMaxMb;
+    @Value("${client.report.retry-initial-ms:1000}")
+    private long reportRetryInitialMs;
+    @Value("${client.report.retry-max-ms:60000}")
+    private long reportRetryMaxMs;
+    @Value("${client.report.aggregate-seconds:1}")
+    private long reportAggregateSeconds;
+    @Value("${client.report.sampling:}")
+    private String reportSampling;
+    @Value("${client.report.binary:false}")
+    private boolean reportBinary;
+    @Value("${client.breaker.failure-threshold:5}")
+    private int breakerFailureThreshold;
+    @Value("${client.breaker.open-ms:10000}")
+    private long breakerOpenMs;
+    @Value("${client.breaker.slow-call-ms:1000}")
+    private long breakerSlowCallMs;
+    @Value("${client.views.cache-size:10000}")
+    private int viewsCacheSize;
+
     private final RestTemplate rest;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final Set<RefreshKey> pendingRefreshes = ConcurrentHashMap.newKeySet();
+    private CircuitBreaker breaker;
+    private ViewCountCache viewCache;
+    private ThreadPoolExecutor refresher;
+    private HitSampler sampler;
+    private HitSpillFile spillFile;
+    private HitReporter reporter;
+
+    public StatsClient(StatsHttpTransport transport, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper.copy().registerModule(new SimpleModule()
+                .addSerializer(LocalDateTime.class, new LocalDateTimeSerializer(DATE_TIME_FORMAT))
+                .addDeserializer(LocalDateTime.class, new LocalDateTimeDeserializer(DATE_TIME_FORMAT)));
+        this.meterRegistry = meterRegistry;
+        this.rest = new RestTemplate(transport.requestFactory());
+        rest.setInterceptors(transport.interceptors());
+        rest.getMessageConverters().removeIf(MappingJackson2HttpMessageConverter.class::isInstance);
+        rest.getMessageConverters().add(new MappingJackson2HttpMessageConverter(this.objectMapper));
+    }
+
+    @PostConstruct
+    void start() {
+        breaker = new CircuitBreaker(breakerFailureThreshold, breakerOpenMs, meterRegistry);
+        viewCache = new ViewCountCache(viewsCacheSize);
+        refresher = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(100),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "stats-views-refresh");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        spillFile = reportOverflow == HitReporter.Overflow.SPILL
+                ? new HitSpillFile(reportSpillDir, reportSpillMaxMb * 1024 * 1024, objectMapper, meterRegistry)
+                : null;
+        sampler = new HitSampler(reportSampling, meterRegistry);
+        reporter = new HitReporter(this::sendBatch, spillFile, reportQueueCapacity, reportBatchSize,
+                reportFlushIntervalMs, reportAggregateSeconds, reportRetryInitialMs, reportRetryMaxMs,
+                meterRegistry);
+        reporter.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        refresher.shutdownNow();
+        reporter.close();
+    }
+
+    /**
+     * Queues the hit for sending in the background and returns immediately. Hits that do not fit into the
+     * queue are dropped or spilled to disk according to {@code client.report.overflow}. Hits of uris listed in
+     * {@code client.report.sampling} may be sampled out, see {@link HitSampler}.
+     */
+    public void report(EndpointHitDto endpointHitDto) {
+        EndpointHitDto sampled = sampler.sample(endpointHitDto);
+        if (sampled != null) {
+            reporter.report(sampled);
+        }
+    }
+
+    /**
+     * Like {@link #getStats}, but never waits for a server the circuit breaker considers down. The last known
+     * counts are returned instead, marked stale, and refreshed in the background up to the current time; the
+     * refresh also serves as the half-open probe of the breaker.
+     */
+    public ViewCounts getViews(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique) {
+        if (breaker.isClosed()) {
+            Map<String, Long> views = fetchViews(start, end, uris, unique);
+            if (views != null) {
+                return new ViewCounts(views, false);
+            }
+        }
+        RefreshKey key = new RefreshKey(start, uris != null ? List.copyOf(uris) : null, unique);
+        if (pendingRefreshes.add(key)) {
+            try {
+                refresher.execute(() -> refresh(key));
+            } catch (RejectedExecutionException e) {
+                pendingRefreshes.remove(key);
+            }
+        }
+        return new ViewCounts(viewCache.get(start, uris, unique), true);
+    }
 
-    public StatsClient() {
-        this.rest = new RestTemplate();
-        HttpClient httpClient = HttpClientBuilder.create().build();
-        HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory(httpClient);
-        rest.setRequestFactory(requestFactory);
+    /**
+     * Long-polls stats-server for unique view counts since {@code start} that changed after {@code since}; pass
+     * null epoch to get a snapshot. {@code waitMs} has to stay below {@code client.http.read-timeout-ms}. Not
+     * guarded by the circuit breaker, a poll that waits is not a slow call.
+     */
+    public ViewFeedDto pollViewFeed(String epoch, long since, long waitMs, LocalDateTime start) {
+        UriComponentsBuilder url = UriComponentsBuilder.fromHttpUrl(serverUrl)
+                .path("/stats/feed")
+                .queryParam("start", DATE_TIME_FORMAT.format(start))
+                .queryParam("since", since)
+                .queryParam("waitMs", waitMs);
+        if (epoch != null) {
+            url.queryParam("epoch", epoch);
+        }
+        return rest.getForObject(url.encode().build().toUri(), ViewFeedDto.class);
     }
 
+    /**
+     * Sends the hit right away. If stats-server cannot be reached or answers with anything but 2xx, 400 or 422
+     * (so 429 and 5xx included) and {@code client.report.overflow} is SPILL, the hit is spooled to disk and sent
+     * again by the background reporter; the server's status (503 if there was none) is returned either way and
+     * nothing is thrown.
+     */
     public ResponseEntity<Object> save(EndpointHitDto endpointHitDto) {
         ResponseEntity<Object> response;
         try {
             response = rest.postForEntity(serverUrl + "/hit", endpointHitDto, Object.class);
         } catch (HttpStatusCodeException e) {
+            if (!isRejected(e)) {
+                spool(endpointHitDto, e.getMessage());
+            }
             return ResponseEntity.status(e.getStatusCode()).body(e.getResponseBodyAsByteArray());
+        } catch (RestClientException e) {
+            spool(endpointHitDto, e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
         }
         ResponseEntity.BodyBuilder responseBuilder = ResponseEntity.status(response.getStatusCode());
         if (response.hasBody()) {
@@ -42,26 +211,149 @@ public class StatsClient {
         return responseBuilder.build();
     }
 
-    public ResponseEntity<Object> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique) {
-        StringBuilder url = new StringBuilder(serverUrl + "/stats?");
-        for (String uri : uris) {
-            url.append("&uris=").append(uri);
+    /**
+     * Returns hits per uri, of all uris if {@code uris} is null. The response is decoded in a single streaming
+     * pass without building intermediate DTOs; uris that were never hit are absent from the map.
+     *
+     * @throws RestClientException if stats-server could not be reached or did not answer with 2xx
+     */
+    public Map<String, Long> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique) {
+        URI url = UriComponentsBuilder.fromHttpUrl(serverUrl)
+                .path("/stats")
+                .queryParam("start", DATE_TIME_FORMAT.format(start))
+                .queryParam("end", DATE_TIME_FORMAT.format(end))
+                .queryParamIfPresent("uris", Optional.ofNullable(uris))
+                .queryParam("unique", unique)
+                .encode()
+                .build()
+                .toUri();
+        Map<String, Long> views = rest.execute(url, HttpMethod.GET,
+                request -> request.getHeaders().setAccept(List.of(MediaType.APPLICATION_JSON)),
+                response -> readViews(response.getBody()));
+        return views != null ? views : Map.of();
+    }
+
+    private Map<String, Long> fetchViews(LocalDateTime start, LocalDateTime end, List<String> uris,
+                                         boolean unique) {
+        long started = System.nanoTime();
+        Map<String, Long> views;
+        try {
+            views = getStats(start, end, uris, unique);
+        } catch (HttpClientErrorException e) {
+            breaker.onSuccess();
+            throw e;
+        } catch (RestClientException e) {
+            breaker.onFailure();
+            log.warn("Failed to get stats, serving last known view counts: {}", e.getMessage());
+            return null;
+        }
+        if (System.nanoTime() - started > TimeUnit.MILLISECONDS.toNanos(breakerSlowCallMs)) {
+            breaker.onFailure();
+        } else {
+            breaker.onSuccess();
         }
-        url.append("&unique=").append(unique);
-        url.append("&start=").append(start);
-        url.append("&end=").append(end);
+        viewCache.putAll(start, uris, unique, views);
+        return views;
+    }
 
-        ResponseEntity<Object> response;
+    private void refresh(RefreshKey key) {
         try {
-            response = rest.exchange(url.toString(), HttpMethod.GET, null, Object.class);
-        } catch (HttpStatusCodeException e) {
-            return ResponseEntity.status(e.getStatusCode()).body(e.getResponseBodyAsByteArray());
+            if (breaker.tryAcquire()) {
+                fetchViews(key.start(), LocalDateTime.now(), key.uris(), key.unique());
+            }
+        } catch (RestClientException e) {
+            log.warn("Failed to refresh view counts: {}", e.getMessage());
+        } finally {
+            pendingRefreshes.remove(key);
         }
-        ResponseEntity.BodyBuilder responseBuilder = ResponseEntity.status(response.getStatusCode());
-        if (response.hasBody()) {
-            return responseBuilder.body(response.getBody());
+    }
+
+    private boolean sendBatch(List<EndpointHitDto> hits) {
+        if (!breaker.tryAcquire()) {
+            return false;
         }
-        return responseBuilder.build();
+        if (reportBinary) {
+            return post(RequestEntity.post(hitsUrl())
+                    .contentType(BINARY_HITS)
+                    .body(HitBinaryCodec.encode(hits)), hits.size() + " hits");
+        }
+        return post(RequestEntity.post(hitsUrl())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(hits), hits.size() + " hits");
+    }
+
+    private void spool(EndpointHitDto hit, String error) {
+        if (spillFile != null && spillFile.append(List.of(hit))) {
+            log.warn("Failed to save hit, spooled it for retry: {}", error);
+        } else {
+            log.warn("Failed to save hit, dropped it: {}", error);
+        }
+    }
+
+    private URI hitsUrl() {
+        return UriComponentsBuilder.fromHttpUrl(serverUrl).path("/hits").build().toUri();
+    }
+
+    /**
+     * Returns false when the request should be retried later. Hits the server rejected as invalid are
+     * logged and not retried; any other status, 429 and 408 included, is retried.
+     */
+    private boolean post(RequestEntity<?> request, String what) {
+        try {
+            rest.exchange(request, Void.class);
+            breaker.onSuccess();
+            return true;
+        } catch (HttpClientErrorException e) {
+            if (!isRejected(e)) {
+                breaker.onFailure();
+                log.warn("Stats server could not take {} now: {}", what, e.getMessage());
+                return false;
+            }
+            breaker.onSuccess();
+            log.warn("Stats server rejected {}: {}", what, e.getMessage());
+            return true;
+        } catch (RestClientException e) {
+            breaker.onFailure();
+            log.warn("Failed to send {} to stats server: {}", what, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Only 400 and 422 mean the hits themselves are bad; sending them again would fail the same way.
+     */
+    private static boolean isRejected(HttpStatusCodeException e) {
+        return e.getStatusCode().isSameCodeAs(HttpStatus.BAD_REQUEST)
+                || e.getStatusCode().isSameCodeAs(HttpStatus.UNPROCESSABLE_ENTITY);
+    }
+
+    private Map<String, Long> readViews(InputStream body) throws IOException {
+        Map<String, Long> views = new HashMap<>();
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new JsonParseException(parser, "Expected an array of view stats");
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                String uri = null;
+                long hits = 0;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    parser.nextToken();
+                    switch (field) {
+                        case "uri" -> uri = parser.getValueAsString();
+                        case "hits" -> hits = parser.getValueAsLong();
+                        default -> parser.skipChildren();
+                    }
+                }
+                if (uri != null) {
+                    // the same uri may come from several apps
+                    views.merge(uri, hits, Long::sum);
+                }
+            }
+        }
+        return views;
     }
-}
 
+    private record RefreshKey(LocalDateTime start, List<String> uris, boolean unique) {
+    }
+}
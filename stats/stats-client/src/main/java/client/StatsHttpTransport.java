@@ -0,0 +1,104 @@
+package client;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * HTTP transport of {@link StatsClient}, configured by {@code client.http.*}. HTTP/1.1 goes through a pooled
+ * Apache HttpClient with keep-alive; HTTP/2 uses the JDK client, which multiplexes requests over a single
+ * connection per server and therefore has no pool to size.
+ */
+@Slf4j
+@Component
+class StatsHttpTransport implements DisposableBean {
+    enum Version {
+        HTTP_1_1,
+        HTTP_2
+    }
+
+    private final ClientHttpRequestFactory requestFactory;
+    private final List<ClientHttpRequestInterceptor> interceptors;
+    private final CloseableHttpClient apacheClient;
+
+    StatsHttpTransport(@Value("${client.http.version:HTTP_1_1}") Version version,
+                       @Value("${client.http.max-connections:50}") int maxConnections,
+                       @Value("${client.http.max-connections-per-route:20}") int maxConnectionsPerRoute,
+                       @Value("${client.http.connect-timeout-ms:1000}") long connectTimeoutMs,
+                       @Value("${client.http.read-timeout-ms:3000}") long readTimeoutMs,
+                       @Value("${client.http.keep-alive-seconds:60}") long keepAliveSeconds,
+                       @Value("${client.http.idle-evict-seconds:30}") long idleEvictSeconds,
+                       @Value("${client.http.gzip:true}") boolean gzip) {
+        if (version == Version.HTTP_2) {
+            this.apacheClient = null;
+            HttpClient jdkClient = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_2)
+                    .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                    .build();
+            JdkClientHttpRequestFactory jdkFactory = new JdkClientHttpRequestFactory(jdkClient);
+            jdkFactory.setReadTimeout(Duration.ofMillis(readTimeoutMs));
+            this.requestFactory = jdkFactory;
+            // the JDK client neither asks for nor decodes compressed responses
+            this.interceptors = gzip ? List.of(new GzipInterceptor(true)) : List.of();
+        } else {
+            PoolingHttpClientConnectionManager connections = PoolingHttpClientConnectionManagerBuilder.create()
+                    .setMaxConnTotal(maxConnections)
+                    .setMaxConnPerRoute(maxConnectionsPerRoute)
+                    .setDefaultConnectionConfig(ConnectionConfig.custom()
+                            .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                            .setSocketTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                            .build())
+                    .build();
+            HttpClientBuilder builder = HttpClientBuilder.create()
+                    .setConnectionManager(connections)
+                    .setDefaultRequestConfig(RequestConfig.custom()
+                            .setConnectionRequestTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                            .setResponseTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                            .build())
+                    .setKeepAliveStrategy((response, context) -> TimeValue.ofSeconds(keepAliveSeconds))
+                    .evictExpiredConnections()
+                    .evictIdleConnections(TimeValue.ofSeconds(idleEvictSeconds));
+            if (!gzip) {
+                builder.disableContentCompression();
+            }
+            this.apacheClient = builder.build();
+            this.requestFactory = new HttpComponentsClientHttpRequestFactory(apacheClient);
+            // Apache HttpClient already negotiates and decodes compressed responses
+            this.interceptors = gzip ? List.of(new GzipInterceptor(false)) : List.of();
+        }
+        log.info("Stats client transport: {}, gzip {}", version, gzip ? "on" : "off");
+    }
+
+    ClientHttpRequestFactory requestFactory() {
+        return requestFactory;
+    }
+
+    List<ClientHttpRequestInterceptor> interceptors() {
+        return interceptors;
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        if (apacheClient != null) {
+            apacheClient.close();
+        }
+    }
+}
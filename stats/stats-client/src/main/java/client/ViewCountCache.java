@@ -0,0 +1,69 @@
+package client;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Last view counts received from stats-server, least recently used entries are evicted beyond {@code maxSize}.
+ * <p>
+ * Counts are kept per uri and uniqueness along with the start of the range they were counted from, the latest
+ * count replacing the previous one. A count is returned for any range starting at or after that start: event
+ * uris have no hits before the event was created, so a count from an earlier start is the count of the asked
+ * range as of the time it was fetched, which is all {@link ViewCounts} promises for stale counts.
+ */
+class ViewCountCache {
+    private final Map<Key, CachedCount> views;
+
+    ViewCountCache(int maxSize) {
+        this.views = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CachedCount> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * {@code uris} null means the counts are for all uris.
+     */
+    synchronized void putAll(LocalDateTime start, List<String> uris, boolean unique, Map<String, Long> counts) {
+        if (uris == null) {
+            counts.forEach((uri, count) -> views.put(new Key(uri, unique), new CachedCount(start, count)));
+            return;
+        }
+        for (String uri : uris) {
+            views.put(new Key(uri, unique), new CachedCount(start, counts.getOrDefault(uri, 0L)));
+        }
+    }
+
+    /**
+     * {@code uris} null means all cached uris.
+     */
+    synchronized Map<String, Long> get(LocalDateTime start, List<String> uris, boolean unique) {
+        Map<String, Long> counts = new HashMap<>();
+        if (uris == null) {
+            views.forEach((key, cached) -> {
+                if (key.unique() == unique && !cached.start().isAfter(start)) {
+                    counts.put(key.uri(), cached.count());
+                }
+            });
+            return counts;
+        }
+        for (String uri : uris) {
+            CachedCount cached = views.get(new Key(uri, unique));
+            if (cached != null && !cached.start().isAfter(start)) {
+                counts.put(uri, cached.count());
+            }
+        }
+        return counts;
+    }
+
+    private record Key(String uri, boolean unique) {
+    }
+
+    private record CachedCount(LocalDateTime start, long count) {
+    }
+}
@@ -0,0 +1,14 @@
+package client;
+
+import java.util.Map;
+
+/**
+ * Hits per uri. {@code stale} is set when stats-server could not be asked and the counts are the last ones it
+ * returned, which may be lower than the current ones or missing.
+ */
+public record ViewCounts(Map<String, Long> views, boolean stale) {
+
+    public long get(String uri) {
+        return views.getOrDefault(uri, 0L);
+    }
+}
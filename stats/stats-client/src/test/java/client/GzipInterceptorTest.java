@@ -0,0 +1,56 @@
+package client;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GzipInterceptorTest {
+    private static final byte[] BODY = "{\"app\":\"ewm-main-service\",\"uri\":\"/events/1\"}".repeat(100)
+            .getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void sendsLengthOfCompressedBody() throws IOException {
+        MockClientHttpRequest request = new MockClientHttpRequest(HttpMethod.POST, URI.create("http://stats/hit"));
+        request.getHeaders().setContentLength(BODY.length);
+        AtomicReference<byte[]> sent = new AtomicReference<>();
+
+        new GzipInterceptor(false).intercept(request, BODY, (req, body) -> {
+            sent.set(body);
+            return new MockClientHttpResponse(new byte[0], HttpStatus.CREATED);
+        });
+
+        assertThat(request.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+        assertThat(request.getHeaders().getContentLength()).isEqualTo(sent.get().length);
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(sent.get()))) {
+            assertThat(in.readAllBytes()).isEqualTo(BODY);
+        }
+    }
+
+    @Test
+    void leavesSmallBodyAsIs() throws IOException {
+        byte[] small = "{}".getBytes(StandardCharsets.UTF_8);
+        MockClientHttpRequest request = new MockClientHttpRequest(HttpMethod.POST, URI.create("http://stats/hit"));
+        request.getHeaders().setContentLength(small.length);
+
+        new GzipInterceptor(false).intercept(request, small, (req, body) -> {
+            assertThat(body).isSameAs(small);
+            return new MockClientHttpResponse(new byte[0], HttpStatus.CREATED);
+        });
+
+        assertThat(request.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING)).isFalse();
+        assertThat(request.getHeaders().getContentLength()).isEqualTo(small.length);
+    }
+}
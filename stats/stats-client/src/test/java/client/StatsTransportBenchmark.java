@@ -0,0 +1,179 @@
+package client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.RequestEntity;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compares the transport the stats client used before {@link StatsHttpTransport} (a default Apache client) with
+ * its HTTP/1.1 and HTTP/2 modes, posting a batch of hits and reading a /stats response from a local stub server.
+ * The stub gzips responses for clients that ask for it and inflates gzip request bodies, as the stats server does.
+ * <p>
+ * Run with {@code java -cp <test classpath> org.openjdk.jmh.Main StatsTransportBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+@Threads(8)
+public class StatsTransportBenchmark {
+    private static final int HITS = 200;
+    private static final int STATS = 200;
+
+    public enum Transport {
+        BASELINE,
+        HTTP_1_1,
+        HTTP_2
+    }
+
+    @Param
+    private Transport transport;
+
+    @Param({"true", "false"})
+    private boolean gzip;
+
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private StatsHttpTransport statsTransport;
+    private RestTemplate rest;
+    private RequestEntity<byte[]> postHits;
+    private RequestEntity<Void> getStats;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        byte[] stats = statsJson();
+        serverThreads = Executors.newFixedThreadPool(16);
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 128);
+        server.setExecutor(serverThreads);
+        server.createContext("/hit", exchange -> {
+            readBody(exchange);
+            exchange.sendResponseHeaders(201, -1);
+            exchange.close();
+        });
+        server.createContext("/stats", exchange -> {
+            readBody(exchange);
+            respond(exchange, stats);
+        });
+        server.start();
+
+        if (transport == Transport.BASELINE) {
+            rest = new RestTemplate(new HttpComponentsClientHttpRequestFactory(HttpClientBuilder.create().build()));
+        } else {
+            statsTransport = new StatsHttpTransport(StatsHttpTransport.Version.valueOf(transport.name()),
+                    50, 20, 1000, 3000, 60, 30, gzip);
+            rest = new RestTemplate(statsTransport.requestFactory());
+            rest.setInterceptors(statsTransport.interceptors());
+        }
+
+        String url = "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+        postHits = RequestEntity.post(URI.create(url + "/hit/batch"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(hitsJson());
+        getStats = RequestEntity.get(URI.create(url + "/stats?start=2024-01-01%2000:00:00"
+                + "&end=2024-12-31%2000:00:00&unique=false")).accept(MediaType.APPLICATION_JSON).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (statsTransport != null) {
+            statsTransport.destroy();
+        }
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    @Benchmark
+    public Object postHitBatch() {
+        return rest.exchange(postHits, Void.class);
+    }
+
+    @Benchmark
+    public Object getStats() {
+        return rest.exchange(getStats, byte[].class).getBody();
+    }
+
+    private static void readBody(HttpExchange exchange) throws IOException {
+        InputStream body = exchange.getRequestBody();
+        if ("gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst(HttpHeaders.CONTENT_ENCODING))) {
+            body = new GZIPInputStream(body);
+        }
+        try (InputStream in = body) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    private static void respond(HttpExchange exchange, byte[] json) throws IOException {
+        String accept = exchange.getRequestHeaders().getFirst(HttpHeaders.ACCEPT_ENCODING);
+        byte[] body = json;
+        if (accept != null && accept.contains("gzip")) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(json.length / 4);
+            try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+                out.write(json);
+            }
+            body = compressed.toByteArray();
+            exchange.getResponseHeaders().set(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        exchange.getResponseHeaders().set(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static byte[] hitsJson() {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < HITS; i++) {
+            json.append(i == 0 ? "" : ",")
+                    .append("{\"app\":\"ewm-main-service\",\"uri\":\"/events/").append(i % 50)
+                    .append("\",\"ip\":\"10.0.").append(i / 250).append('.').append(i % 250)
+                    .append("\",\"timestamp\":\"2024-01-01 12:00:").append(String.format("%02d", i % 60))
+                    .append("\"}");
+        }
+        return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] statsJson() {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < STATS; i++) {
+            json.append(i == 0 ? "" : ",")
+                    .append("{\"app\":\"ewm-main-service\",\"uri\":\"/events/").append(i)
+                    .append("\",\"hits\":").append(100_000 - i).append('}');
+        }
+        return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,45 @@
+package client;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ViewCountCacheTest {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    @Test
+    void servesCountsToRangesStartingLater() {
+        ViewCountCache cache = new ViewCountCache(10);
+        cache.putAll(START, List.of("/events/1", "/events/2"), true, Map.of("/events/1", 5L));
+
+        assertThat(cache.get(START, List.of("/events/1", "/events/2"), true))
+                .containsExactlyInAnyOrderEntriesOf(Map.of("/events/1", 5L, "/events/2", 0L));
+        assertThat(cache.get(START.plusDays(1), List.of("/events/1"), true)).containsEntry("/events/1", 5L);
+        assertThat(cache.get(START.minusSeconds(1), List.of("/events/1"), true)).isEmpty();
+        assertThat(cache.get(START, List.of("/events/1"), false)).isEmpty();
+    }
+
+    @Test
+    void keepsLatestCountPerUri() {
+        ViewCountCache cache = new ViewCountCache(10);
+        cache.putAll(START, List.of("/events/1"), true, Map.of("/events/1", 5L));
+        cache.putAll(START.plusHours(1), List.of("/events/1"), true, Map.of("/events/1", 7L));
+
+        assertThat(cache.get(START.plusHours(1), null, true)).containsExactlyEntriesOf(Map.of("/events/1", 7L));
+        assertThat(cache.get(START, null, true)).isEmpty();
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedUris() {
+        ViewCountCache cache = new ViewCountCache(2);
+        cache.putAll(START, null, false, Map.of("/events/1", 1L, "/events/2", 2L));
+        cache.get(START, List.of("/events/1"), false);
+        cache.putAll(START, List.of("/events/3"), false, Map.of("/events/3", 3L));
+
+        assertThat(cache.get(START, null, false)).containsOnlyKeys("/events/1", "/events/3");
+    }
+}
@@ -1,7 +1,10 @@
 package dto;
 
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Past;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
 import lombok.*;
 
 import java.time.LocalDateTime;
@@ -13,12 +16,15 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 public class EndpointHitDto {
     @NotNull
+    @Size(max = 200)
     private String app;
 
     @NotNull
+    @Size(max = 200)
     private String uri;
 
     @NotNull
+    @Size(max = 200)
     private String ip;
 
     @NotNull
@@ -26,4 +32,15 @@ public class EndpointHitDto {
     // @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
     private LocalDateTime timestamp;
 
+    /**
+     * How many hits of this visitor the record stands for; absent means one.
+     */
+    @Positive
+    @Max(Integer.MAX_VALUE)
+    private Long hits;
+
+    public EndpointHitDto(String app, String uri, String ip, LocalDateTime timestamp) {
+        this(app, uri, ip, timestamp, null);
+    }
+
 }
@@ -0,0 +1,201 @@
+package dto;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of hits, sent as {@value #MEDIA_TYPE}.
+ *
+ * <p>A body starts with the bytes {@code E W H 1}, followed by records, each prefixed with its length as an
+ * unsigned varint. A record holds app, uri and ip as string references and the timestamp as a zigzag varint of
+ * epoch milliseconds (timestamps taken as UTC) minus the previous record's, optionally followed by the number of
+ * hits the record stands for as a varint (one if absent). A string reference is a varint: 0
+ * is followed by a varint byte length and the UTF-8 bytes, and adds the string to the body's dictionary while it
+ * has fewer than {@link #MAX_DICTIONARY_SIZE} entries; {@code n > 0} refers to dictionary entry {@code n - 1}.
+ */
+public final class HitBinaryCodec {
+    public static final String MEDIA_TYPE = "application/x-ewm-hits";
+    private static final byte[] MAGIC = {'E', 'W', 'H', '1'};
+    private static final int MAX_DICTIONARY_SIZE = 65536;
+    private static final int MAX_RECORD_SIZE = 65536;
+
+    private HitBinaryCodec() {
+    }
+
+    public static byte[] encode(List<EndpointHitDto> hits) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(MAGIC.length + hits.size() * 8);
+        out.writeBytes(MAGIC);
+        Map<String, Integer> dictionary = new HashMap<>();
+        ByteArrayOutputStream record = new ByteArrayOutputStream(64);
+        long previousMillis = 0;
+        for (EndpointHitDto hit : hits) {
+            record.reset();
+            writeString(record, hit.getApp(), dictionary);
+            writeString(record, hit.getUri(), dictionary);
+            writeString(record, hit.getIp(), dictionary);
+            long millis = hit.getTimestamp().toInstant(ZoneOffset.UTC).toEpochMilli();
+            long delta = millis - previousMillis;
+            writeVarint(record, (delta << 1) ^ (delta >> 63));
+            previousMillis = millis;
+            if (hit.getHits() != null && hit.getHits() != 1) {
+                writeVarint(record, hit.getHits());
+            }
+            writeVarint(out, record.size());
+            out.write(record.toByteArray(), 0, record.size());
+        }
+        return out.toByteArray();
+    }
+
+    public static Reader reader(InputStream in) {
+        return new Reader(in);
+    }
+
+    /**
+     * Decodes hits one by one, throws {@link StreamCorruptedException} on malformed input.
+     */
+    public static final class Reader {
+        private final InputStream in;
+        private final List<String> dictionary = new ArrayList<>();
+        private boolean started;
+        private long previousMillis;
+        private byte[] record;
+        private int position;
+        private int limit;
+
+        private Reader(InputStream in) {
+            this.in = in instanceof BufferedInputStream ? in : new BufferedInputStream(in);
+        }
+
+        /**
+         * Returns the next hit, or null at the end of the body.
+         */
+        public EndpointHitDto next() throws IOException {
+            if (!started) {
+                byte[] magic = in.readNBytes(MAGIC.length);
+                if (magic.length == 0) {
+                    return null;
+                }
+                if (!Arrays.equals(magic, MAGIC)) {
+                    throw new StreamCorruptedException("Not an " + MEDIA_TYPE + " body");
+                }
+                started = true;
+            }
+            long length = readVarint(in);
+            if (length < 0) {
+                return null;
+            }
+            if (length > MAX_RECORD_SIZE) {
+                throw new StreamCorruptedException("Record of " + length + " bytes exceeds " + MAX_RECORD_SIZE);
+            }
+            record = in.readNBytes((int) length);
+            if (record.length != length) {
+                throw new EOFException("Truncated record");
+            }
+            position = 0;
+            limit = record.length;
+            String app = readString();
+            String uri = readString();
+            String ip = readString();
+            long zigzag = readRecordVarint();
+            previousMillis += (zigzag >>> 1) ^ -(zigzag & 1);
+            Long hits = position < limit ? readRecordVarint() : null;
+            if (position != limit) {
+                throw new StreamCorruptedException("Trailing bytes in record");
+            }
+            LocalDateTime timestamp = LocalDateTime.ofInstant(Instant.ofEpochMilli(previousMillis), ZoneOffset.UTC);
+            return new EndpointHitDto(app, uri, ip, timestamp, hits);
+        }
+
+        private String readString() throws StreamCorruptedException {
+            long reference = readRecordVarint();
+            if (reference > 0) {
+                if (reference > dictionary.size()) {
+                    throw new StreamCorruptedException("Unknown string reference " + reference);
+                }
+                return dictionary.get((int) reference - 1);
+            }
+            long length = readRecordVarint();
+            if (length > limit - position) {
+                throw new StreamCorruptedException("String runs past the record");
+            }
+            String value = new String(record, position, (int) length, StandardCharsets.UTF_8);
+            position += (int) length;
+            if (dictionary.size() < MAX_DICTIONARY_SIZE) {
+                dictionary.add(value);
+            }
+            return value;
+        }
+
+        private long readRecordVarint() throws StreamCorruptedException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (position == limit) {
+                    throw new StreamCorruptedException("Varint runs past the record");
+                }
+                byte b = record[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new StreamCorruptedException("Varint is too long");
+        }
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value, Map<String, Integer> dictionary) {
+        Integer index = dictionary.get(value);
+        if (index != null) {
+            writeVarint(out, index + 1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, 0);
+        writeVarint(out, bytes.length);
+        out.writeBytes(bytes);
+        if (dictionary.size() < MAX_DICTIONARY_SIZE) {
+            dictionary.put(value, dictionary.size());
+        }
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /**
+     * Returns -1 if the stream ends before the first byte.
+     */
+    private static long readVarint(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                if (shift == 0) {
+                    return -1;
+                }
+                throw new EOFException("Truncated record length");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Record length is too long");
+    }
+}
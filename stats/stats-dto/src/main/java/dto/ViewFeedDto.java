@@ -0,0 +1,21 @@
+package dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Answer of {@code GET /stats/feed}: all-time unique hits of the uris that were hit after the requested
+ * sequence, or of every uri if {@code snapshot} is set. Pass {@code epoch} and {@code sequence} to the next poll.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ViewFeedDto {
+    private String epoch;
+    private long sequence;
+    private boolean snapshot;
+    private List<ViewStatsDto> views;
+}
@@ -0,0 +1,105 @@
+package dto;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.datatype.jsr310.deser.LocalDateTimeDeserializer;
+import com.fasterxml.jackson.datatype.jsr310.ser.LocalDateTimeSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compares encoding and decoding a batch of hits with {@link HitBinaryCodec} and with JSON as the stats client
+ * sends it. The sizes of both bodies, plain and gzipped, are printed once per trial.
+ * <p>
+ * Run with {@code java -cp <test classpath> org.openjdk.jmh.Main HitBinaryCodecBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HitBinaryCodecBenchmark {
+    private static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final TypeReference<List<EndpointHitDto>> HITS = new TypeReference<>() {
+    };
+
+    @Param({"100", "1000"})
+    private int batchSize;
+
+    private ObjectMapper objectMapper;
+    private List<EndpointHitDto> hits;
+    private byte[] json;
+    private byte[] binary;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = new ObjectMapper().registerModule(new SimpleModule()
+                .addSerializer(LocalDateTime.class, new LocalDateTimeSerializer(DATE_TIME_FORMAT))
+                .addDeserializer(LocalDateTime.class, new LocalDateTimeDeserializer(DATE_TIME_FORMAT)));
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 12, 0);
+        hits = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            hits.add(new EndpointHitDto("ewm-main-service", "/events/" + i % 50, "10.0.0." + i % 200,
+                    start.plusSeconds(i)));
+        }
+        json = objectMapper.writeValueAsBytes(hits);
+        binary = HitBinaryCodec.encode(hits);
+        System.out.printf("%n%d hits: JSON %d bytes (%d gzipped), binary %d bytes (%d gzipped)%n", batchSize,
+                json.length, gzip(json).length, binary.length, gzip(binary).length);
+    }
+
+    @Benchmark
+    public byte[] encodeJson() throws IOException {
+        return objectMapper.writeValueAsBytes(hits);
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        return HitBinaryCodec.encode(hits);
+    }
+
+    @Benchmark
+    public List<EndpointHitDto> decodeJson() throws IOException {
+        return objectMapper.readValue(json, HITS);
+    }
+
+    @Benchmark
+    public List<EndpointHitDto> decodeBinary() throws IOException {
+        List<EndpointHitDto> decoded = new ArrayList<>(batchSize);
+        HitBinaryCodec.Reader reader = HitBinaryCodec.reader(new ByteArrayInputStream(binary));
+        EndpointHitDto hit;
+        while ((hit = reader.next()) != null) {
+            decoded.add(hit);
+        }
+        return decoded;
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(body);
+        }
+        return compressed.toByteArray();
+    }
+}
@@ -0,0 +1,66 @@
+package dto;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HitBinaryCodecTest {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    @Test
+    void decodesEncodedHits() throws IOException {
+        List<EndpointHitDto> hits = List.of(
+                new EndpointHitDto("ewm-main-service", "/events/1", "10.0.0.1", START),
+                new EndpointHitDto("ewm-main-service", "/events/2", "10.0.0.1", START.minusSeconds(5), 3L));
+
+        List<EndpointHitDto> decoded = decode(HitBinaryCodec.encode(hits));
+
+        assertThat(decoded).hasSize(2);
+        assertThat(decoded.get(0)).usingRecursiveComparison().isEqualTo(hits.get(0));
+        assertThat(decoded.get(1)).usingRecursiveComparison().isEqualTo(hits.get(1));
+    }
+
+    @Test
+    void encodesRepeatedValuesCompactly() throws IOException {
+        List<EndpointHitDto> hits = new ArrayList<>();
+        long json = 0;
+        for (int i = 0; i < 1000; i++) {
+            EndpointHitDto hit = new EndpointHitDto("ewm-main-service", "/events/" + i % 50, "10.0.0." + i % 200,
+                    START.plusSeconds(i));
+            hits.add(hit);
+            String row = String.format("{\"app\":\"%s\",\"uri\":\"%s\",\"ip\":\"%s\",\"timestamp\":\"%s\"},",
+                    hit.getApp(), hit.getUri(), hit.getIp(), hit.getTimestamp());
+            json += row.getBytes(StandardCharsets.UTF_8).length;
+        }
+
+        byte[] encoded = HitBinaryCodec.encode(hits);
+
+        assertThat(decode(encoded)).hasSize(hits.size());
+        assertThat((long) encoded.length).isLessThan(json / 5);
+    }
+
+    @Test
+    void rejectsOtherContent() {
+        byte[] body = "[{\"app\":\"ewm-main-service\"}]".getBytes(StandardCharsets.UTF_8);
+
+        assertThatThrownBy(() -> decode(body)).isInstanceOf(StreamCorruptedException.class);
+    }
+
+    private static List<EndpointHitDto> decode(byte[] body) throws IOException {
+        HitBinaryCodec.Reader reader = HitBinaryCodec.reader(new ByteArrayInputStream(body));
+        List<EndpointHitDto> hits = new ArrayList<>();
+        for (EndpointHitDto hit = reader.next(); hit != null; hit = reader.next()) {
+            hits.add(hit);
+        }
+        return hits;
+    }
+}
@@ -0,0 +1,14 @@
+package ewm;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class DatabaseConfig {
+
+    @Bean
+    public DatabaseDialect databaseDialect(@Value("${spring.datasource.url}") String url) {
+        return DatabaseDialect.fromJdbcUrl(url);
+    }
+}
@@ -0,0 +1,12 @@
+package ewm;
+
+import org.springframework.boot.jdbc.DatabaseDriver;
+
+public enum DatabaseDialect {
+    POSTGRESQL,
+    H2;
+
+    public static DatabaseDialect fromJdbcUrl(String url) {
+        return DatabaseDriver.fromJdbcUrl(url) == DatabaseDriver.POSTGRESQL ? POSTGRESQL : H2;
+    }
+}
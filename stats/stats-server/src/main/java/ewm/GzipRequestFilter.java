@@ -0,0 +1,174 @@
+package ewm;
+
+import ewm.exception.BadRequestException;
+import ewm.exception.PayloadTooLargeException;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Inflates request bodies sent with {@code Content-Encoding: gzip}, which the stats client uses for hit batches.
+ * An inflated body larger than {@code stats.ingest.max-inflated-mb} fails the request with 413, so a small
+ * compressed body cannot make the server read an unbounded amount of data. A body that is not valid gzip is
+ * the client's fault and fails with 400.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class GzipRequestFilter extends OncePerRequestFilter {
+    private final long maxInflatedBytes;
+
+    public GzipRequestFilter(@Value("${stats.ingest.max-inflated-mb:64}") long maxInflatedMb) {
+        this.maxInflatedBytes = maxInflatedMb * 1024 * 1024;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if ("gzip".equalsIgnoreCase(request.getHeader(HttpHeaders.CONTENT_ENCODING))) {
+            chain.doFilter(new GzipRequest(request, maxInflatedBytes), response);
+        } else {
+            chain.doFilter(request, response);
+        }
+    }
+
+    private static final class GzipRequest extends HttpServletRequestWrapper {
+        private final long maxInflatedBytes;
+        private ServletInputStream body;
+
+        private GzipRequest(HttpServletRequest request, long maxInflatedBytes) {
+            super(request);
+            this.maxInflatedBytes = maxInflatedBytes;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (body == null) {
+                try {
+                    body = new InflatingInputStream(new GZIPInputStream(super.getInputStream()), maxInflatedBytes);
+                } catch (ZipException | EOFException e) {
+                    throw malformed(e);
+                }
+            }
+            return body;
+        }
+
+        @Override
+        public int getContentLength() {
+            return -1;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return -1;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return isEncodingHeader(name) ? null : super.getHeader(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            return isEncodingHeader(name) ? Collections.emptyEnumeration() : super.getHeaders(name);
+        }
+
+        private static boolean isEncodingHeader(String name) {
+            return HttpHeaders.CONTENT_ENCODING.equalsIgnoreCase(name)
+                    || HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name);
+        }
+    }
+
+    private static BadRequestException malformed(IOException e) {
+        return new BadRequestException("Malformed gzip body: " + e.getMessage());
+    }
+
+    /**
+     * Inflating needs blocking reads of the compressed body, so there is no non-blocking mode.
+     */
+    private static final class InflatingInputStream extends ServletInputStream {
+        private final InputStream in;
+        private final long maxBytes;
+        private long inflated;
+        private boolean finished;
+
+        private InflatingInputStream(InputStream in, long maxBytes) {
+            this.in = in;
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b;
+            try {
+                b = in.read();
+            } catch (ZipException | EOFException e) {
+                throw malformed(e);
+            }
+            finished = b < 0;
+            if (!finished) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read;
+            try {
+                read = in.read(buffer, offset, length);
+            } catch (ZipException | EOFException e) {
+                throw malformed(e);
+            }
+            finished = read < 0;
+            if (!finished) {
+                count(read);
+            }
+            return read;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return finished;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            throw new UnsupportedOperationException("Non-blocking reads of gzip bodies are not supported");
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        private void count(int bytes) {
+            inflated += bytes;
+            if (inflated > maxBytes) {
+                throw new PayloadTooLargeException("Inflated request body is larger than " + maxBytes + " bytes");
+            }
+        }
+    }
+}
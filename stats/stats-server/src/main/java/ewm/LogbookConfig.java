@@ -0,0 +1,33 @@
+package ewm;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.zalando.logbook.HttpRequest;
+import org.zalando.logbook.HttpResponse;
+import org.zalando.logbook.Strategy;
+
+import java.io.IOException;
+
+@Configuration
+public class LogbookConfig {
+
+    /**
+     * Streamed /stats responses may be arbitrarily large, so their bodies are not buffered for logging.
+     */
+    @Bean
+    public Strategy logbookStrategy() {
+        return new Strategy() {
+            @Override
+            public HttpResponse process(HttpRequest request, HttpResponse response) throws IOException {
+                return isStreamed(request) ? response.withoutBody() : response.withBody();
+            }
+        };
+    }
+
+    private static boolean isStreamed(HttpRequest request) {
+        String accept = request.getHeaders().getFirst("Accept");
+        return request.getQuery().contains("stream=true")
+                || accept != null && accept.contains(MediaType.APPLICATION_NDJSON_VALUE);
+    }
+}
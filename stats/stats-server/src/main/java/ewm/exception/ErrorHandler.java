@@ -23,6 +23,28 @@ public class ErrorHandler {
                 .build();
     }
 
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+    public ErrorResponse handleTooManyRequestsException(final TooManyRequestsException e) {
+        return ErrorResponse.builder()
+                .message(e.getMessage())
+                .reason("Stats server is overloaded.")
+                .status("TOO_MANY_REQUESTS")
+                .timestamp(LocalDateTime.now())
+                .build();
+    }
+
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.PAYLOAD_TOO_LARGE)
+    public ErrorResponse handlePayloadTooLargeException(final PayloadTooLargeException e) {
+        return ErrorResponse.builder()
+                .message(e.getMessage())
+                .reason("Request body is too large.")
+                .status("PAYLOAD_TOO_LARGE")
+                .timestamp(LocalDateTime.now())
+                .build();
+    }
+
     @ExceptionHandler
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     public ErrorResponse handleThrowable(final InternalServerException e) {
@@ -1,7 +1,5 @@
 package ewm.stat;
 
-import com.fasterxml.jackson.annotation.JsonFormat;
-import jakarta.persistence.*;
 import lombok.*;
 
 import java.time.LocalDateTime;
@@ -11,24 +9,19 @@ import java.time.LocalDateTime;
 @Builder
 @Getter
 @Setter
-@Entity
-@Table(name = "endpoint_hits")
 public class EndpointHit {
-    @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
-    private long id;
-
-    @Column(nullable = false)
     private String app;
 
-    @Column(nullable = false)
     private String uri;
 
-    @Column(nullable = false)
     private String ip;
 
-    @Column(nullable = false)
-    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
     private LocalDateTime timestamp;
 
+    /**
+     * Number of hits this one stands for, more than one for pre-aggregated or sampled hits.
+     */
+    @Builder.Default
+    private long hits = 1;
+
 }
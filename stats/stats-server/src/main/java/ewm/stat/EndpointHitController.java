@@ -1,14 +1,23 @@
 package ewm.stat;
 
 import dto.EndpointHitDto;
+import dto.HitBinaryCodec;
+import dto.ViewFeedDto;
 import dto.ViewStatsDto;
 import ewm.stat.service.EndpointHitService;
+import ewm.stat.stream.StatsStreamWriter;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -18,6 +27,7 @@ import java.util.List;
 @Validated
 public class EndpointHitController {
     private final EndpointHitService service;
+    private final StatsStreamWriter streamWriter;
 
     @ResponseStatus(HttpStatus.CREATED)
     @PostMapping("/hit")
@@ -25,12 +35,71 @@ public class EndpointHitController {
         service.create(endpointHitDto);
     }
 
+    @ResponseStatus(HttpStatus.CREATED)
+    @PostMapping(value = "/hits", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public void createAll(HttpServletRequest request) throws IOException {
+        service.createAll(request.getInputStream());
+    }
+
+    @ResponseStatus(HttpStatus.CREATED)
+    @PostMapping(value = "/hits", consumes = HitBinaryCodec.MEDIA_TYPE)
+    public void createAllBinary(HttpServletRequest request) throws IOException {
+        service.createAllBinary(request.getInputStream());
+    }
+
     @GetMapping("/stats")
     public List<ViewStatsDto> getStats(@RequestParam LocalDateTime start, @RequestParam LocalDateTime end,
                                        @RequestParam(required = false) List<String> uris,
-                                       @RequestParam(defaultValue = "false") boolean unique) {
-        return service.getStats(start, end, uris, unique);
+                                       @RequestParam(defaultValue = "false") boolean unique,
+                                       @RequestParam(defaultValue = "false") boolean approximate,
+                                       @RequestParam(required = false) Integer limit) {
+        return service.getStats(start, end, uris, unique, approximate, limit);
+
+    }
+
+    @GetMapping(value = "/stats", params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamStats(@RequestParam LocalDateTime start,
+                                                             @RequestParam LocalDateTime end,
+                                                             @RequestParam(required = false) List<String> uris,
+                                                             @RequestParam(defaultValue = "false") boolean unique,
+                                                             @RequestParam(defaultValue = "false") boolean approximate,
+                                                             @RequestParam(required = false) Integer limit,
+                                                             @RequestHeader(value = HttpHeaders.ACCEPT,
+                                                                     required = false) String accept) {
+        return stream(start, end, uris, unique, approximate, limit, StatsStreamWriter.acceptsNdjson(accept));
+    }
+
+    @GetMapping(value = "/stats", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamStatsNdjson(@RequestParam LocalDateTime start,
+                                                                   @RequestParam LocalDateTime end,
+                                                                   @RequestParam(required = false) List<String> uris,
+                                                                   @RequestParam(defaultValue = "false") boolean unique,
+                                                                   @RequestParam(defaultValue = "false")
+                                                                   boolean approximate,
+                                                                   @RequestParam(required = false) Integer limit) {
+        return stream(start, end, uris, unique, approximate, limit, true);
+    }
+
+    /**
+     * Long poll: answers as soon as hits arrive after {@code since}, or with no views after {@code waitMs}.
+     * Views are unique hits since {@code start}, all of them if it is not given.
+     */
+    @GetMapping("/stats/feed")
+    public ViewFeedDto getViewFeed(@RequestParam(required = false) String epoch,
+                                   @RequestParam(defaultValue = "0") long since,
+                                   @RequestParam(defaultValue = "10000") long waitMs,
+                                   @RequestParam(defaultValue = "1970-01-01 00:00:00") LocalDateTime start) {
+        return service.getViewFeed(epoch, since, waitMs, start);
+    }
 
+    private ResponseEntity<StreamingResponseBody> stream(LocalDateTime start, LocalDateTime end, List<String> uris,
+                                                         boolean unique, boolean approximate, Integer limit,
+                                                         boolean ndjson) {
+        service.validateStatsRequest(start, end, limit);
+        return ResponseEntity.ok()
+                .contentType(ndjson ? MediaType.APPLICATION_NDJSON : MediaType.APPLICATION_JSON)
+                .body(out -> streamWriter.write(sink -> service.streamStats(start, end, uris, unique, approximate,
+                        limit, sink), ndjson, out));
     }
 
 }
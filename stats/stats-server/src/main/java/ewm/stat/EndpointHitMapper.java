@@ -14,6 +14,7 @@ public class EndpointHitMapper {
                 .uri(dto.getUri())
                 .ip(dto.getIp())
                 .timestamp(dto.getTimestamp())
+                .hits(dto.getHits() != null ? dto.getHits() : 1)
                 .build();
     }
 
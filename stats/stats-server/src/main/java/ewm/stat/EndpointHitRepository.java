@@ -1,40 +1,66 @@
 package ewm.stat;
 
 import dto.ViewStatsDto;
-import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Query;
+import ewm.stat.dictionary.HitDictionary;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
 
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.List;
 
-public interface EndpointHitRepository extends JpaRepository<EndpointHit, Long> {
-
-    @Query("SELECT new dto.ViewStatsDto(h.app, h.uri, COUNT(h.uri)) " +
-            "FROM EndpointHit AS h " +
-            "WHERE h.timestamp BETWEEN ?1 AND ?2 " +
-            "GROUP BY h.app, h.uri " +
-            "ORDER BY COUNT (h.uri) DESC")
-    List<ViewStatsDto> getAllHitsWithoutUris(LocalDateTime start, LocalDateTime end);
-
-    @Query("SELECT new dto.ViewStatsDto(h.app, h.uri, COUNT(h.uri)) " +
-            "FROM EndpointHit AS h " +
-            "WHERE h.uri IN (?1) AND h.timestamp BETWEEN ?2 AND ?3 " +
-            "GROUP BY h.app, h.uri " +
-            "ORDER BY COUNT (h.uri) DESC")
-    List<ViewStatsDto> getAllHitsWithUris(List<String> uris, LocalDateTime start, LocalDateTime end);
-
-    @Query("SELECT new dto.ViewStatsDto(h.app, h.uri, COUNT(DISTINCT h.ip)) " +
-            "FROM EndpointHit AS h " +
-            "WHERE h.timestamp BETWEEN ?1 AND ?2 " +
-            "GROUP BY h.app, h.uri " +
-            "ORDER BY COUNT(DISTINCT h.ip) DESC")
-    List<ViewStatsDto> getHitsWithoutUrisWithUniqueIp(LocalDateTime start, LocalDateTime end);
-
-    @Query("SELECT new dto.ViewStatsDto(h.app, h.uri, COUNT(DISTINCT h.ip)) " +
-            "FROM EndpointHit AS h " +
-            "WHERE h.uri IN (?1) AND h.timestamp BETWEEN ?2 AND ?3 " +
-            "GROUP BY h.app, h.uri " +
-            "ORDER BY COUNT(DISTINCT h.ip) DESC")
-    List<ViewStatsDto> getHitsWithUrisWithUniqueIp(List<String> uris, LocalDateTime start, LocalDateTime end);
+/**
+ * Aggregates over raw hits. Groups are built on dictionary ids and only the resulting rows are
+ * decoded back to app and uri.
+ */
+@Repository
+@RequiredArgsConstructor
+public class EndpointHitRepository {
+    private static final String COUNT_HITS_IN_RANGE = "SELECT app_id, uri_id, SUM(hits) AS hits " +
+            "FROM endpoint_hits " +
+            "WHERE timestamp >= :from AND timestamp < :to ";
+    private static final String COUNT_UNIQUE_HITS = "SELECT app_id, uri_id, COUNT(DISTINCT ip) AS hits " +
+            "FROM endpoint_hits " +
+            "WHERE timestamp BETWEEN :from AND :to ";
+    private static final String URIS_FILTER = "AND uri_id IN (:uriIds) ";
+    private static final String GROUP_BY = "GROUP BY app_id, uri_id";
+    private static final String ORDER_BY_HITS = " ORDER BY hits DESC";
 
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final HitDictionary dictionary;
+
+    /**
+     * Hits in {@code [from, to)}; {@code uriIds} null means all uris.
+     */
+    public List<ViewStatsDto> countHitsInRange(LocalDateTime from, LocalDateTime to, List<Integer> uriIds) {
+        return query(COUNT_HITS_IN_RANGE, GROUP_BY, from, to, uriIds);
+    }
+
+    /**
+     * Distinct visitors in {@code [start, end]}, most visited first.
+     */
+    public List<ViewStatsDto> countUniqueHits(LocalDateTime start, LocalDateTime end, List<Integer> uriIds) {
+        return query(COUNT_UNIQUE_HITS, GROUP_BY + ORDER_BY_HITS, start, end, uriIds);
+    }
+
+    public RowMapper<ViewStatsDto> statsRowMapper() {
+        return (rs, rowNum) -> new ViewStatsDto(dictionary.app(rs.getInt("app_id")),
+                dictionary.uri(rs.getInt("uri_id")), rs.getLong("hits"));
+    }
+
+    private List<ViewStatsDto> query(String select, String groupBy, LocalDateTime from, LocalDateTime to,
+                                     List<Integer> uriIds) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", Timestamp.valueOf(from))
+                .addValue("to", Timestamp.valueOf(to));
+        String sql = select;
+        if (uriIds != null) {
+            sql += URIS_FILTER;
+            params.addValue("uriIds", uriIds);
+        }
+        return jdbcTemplate.query(sql + groupBy, params, statsRowMapper());
+    }
 }
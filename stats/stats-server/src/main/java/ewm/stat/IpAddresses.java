@@ -0,0 +1,93 @@
+package ewm.stat;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+public final class IpAddresses {
+    private static final int IPV6_LENGTH = 16;
+
+    private IpAddresses() {
+    }
+
+    /**
+     * Same as {@link #toBytes(String)}, but a value that is not an IP literal still gets a stable address:
+     * the discard-only prefix {@code 0100::/64} followed by the first 8 bytes of the MD5 of the value, as
+     * the V4 migration encodes such values. Distinct values stay distinct for unique counts.
+     */
+    public static byte[] encode(String ip) {
+        byte[] address = toBytes(ip);
+        if (address != null) {
+            return address;
+        }
+        byte[] bytes = new byte[IPV6_LENGTH];
+        bytes[0] = 0x01;
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(ip.getBytes(StandardCharsets.UTF_8));
+            System.arraycopy(digest, 0, bytes, 8, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not available", e);
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the address as 16 bytes (IPv4 in its IPv4-mapped IPv6 form) or null when the value is
+     * not an IP literal. Host names are never resolved.
+     */
+    public static byte[] toBytes(String ip) {
+        if (ip == null || ip.isEmpty()) {
+            return null;
+        }
+        if (ip.indexOf(':') >= 0) {
+            return parseIpv6(ip);
+        }
+        return parseIpv4(ip);
+    }
+
+    private static byte[] parseIpv4(String ip) {
+        byte[] bytes = new byte[IPV6_LENGTH];
+        bytes[10] = (byte) 0xff;
+        bytes[11] = (byte) 0xff;
+        int octet = 0;
+        int value = -1;
+        for (int i = 0; i <= ip.length(); i++) {
+            char c = i < ip.length() ? ip.charAt(i) : '.';
+            if (c == '.') {
+                if (value < 0 || octet == 4) {
+                    return null;
+                }
+                bytes[12 + octet++] = (byte) value;
+                value = -1;
+            } else if (c >= '0' && c <= '9') {
+                value = (value < 0 ? 0 : value * 10) + (c - '0');
+                if (value > 255) {
+                    return null;
+                }
+            } else {
+                return null;
+            }
+        }
+        return octet == 4 ? bytes : null;
+    }
+
+    private static byte[] parseIpv6(String ip) {
+        for (int i = 0; i < ip.length(); i++) {
+            char c = ip.charAt(i);
+            if (Character.digit(c, 16) < 0 && c != ':' && c != '.' && c != '%') {
+                return null;
+            }
+        }
+        try {
+            byte[] address = InetAddress.getByName(ip).getAddress();
+            if (address.length == IPV6_LENGTH) {
+                return address;
+            }
+            return parseIpv4(InetAddress.getByAddress(address).getHostAddress());
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,4 @@
+package ewm.stat;
+
+public record StatKey(String app, String uri) {
+}
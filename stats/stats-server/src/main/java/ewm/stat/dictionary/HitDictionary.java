@@ -0,0 +1,130 @@
+package ewm.stat.dictionary;
+
+import ewm.DatabaseDialect;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps app names and uris to the integer ids stored in endpoint_hits, rollups and sketches, and back.
+ * Both directions are cached for the lifetime of the process; the sets of apps and event uris are
+ * small and ids never change once assigned.
+ * <p>
+ * New values are committed on their own, so an id handed out to a batch that later rolls back still
+ * exists in the dictionary. Ids must therefore be resolved outside of any transaction: inserting from
+ * inside one throws instead of taking a second pooled connection next to the one the transaction holds.
+ */
+@Component
+public class HitDictionary {
+    private final Dictionary apps;
+    private final Dictionary uris;
+
+    public HitDictionary(JdbcTemplate jdbcTemplate, DatabaseDialect dialect,
+                         PlatformTransactionManager transactionManager) {
+        TransactionTemplate insertTransaction = new TransactionTemplate(transactionManager);
+        insertTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_NEVER);
+        this.apps = new Dictionary(jdbcTemplate, dialect, insertTransaction, "endpoint_apps", "name");
+        this.uris = new Dictionary(jdbcTemplate, dialect, insertTransaction, "endpoint_uris", "uri");
+    }
+
+    public int appId(String app) {
+        return apps.getOrCreateId(app);
+    }
+
+    public int uriId(String uri) {
+        return uris.getOrCreateId(uri);
+    }
+
+    /**
+     * Returns ids of the known uris, unknown ones have no hits and are skipped. Null stays null.
+     */
+    public List<Integer> findUriIds(List<String> values) {
+        if (values == null) {
+            return null;
+        }
+        List<Integer> ids = new ArrayList<>(values.size());
+        for (String value : values) {
+            Integer id = uris.findId(value);
+            if (id != null) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    public String app(int id) {
+        return apps.value(id);
+    }
+
+    public String uri(int id) {
+        return uris.value(id);
+    }
+
+    private static final class Dictionary {
+        private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+        private final Map<Integer, String> values = new ConcurrentHashMap<>();
+        private final JdbcTemplate jdbcTemplate;
+        private final TransactionTemplate insertTransaction;
+        private final String insertSql;
+        private final String selectIdSql;
+        private final String selectValueSql;
+
+        Dictionary(JdbcTemplate jdbcTemplate, DatabaseDialect dialect, TransactionTemplate insertTransaction,
+                   String table, String column) {
+            this.jdbcTemplate = jdbcTemplate;
+            this.insertTransaction = insertTransaction;
+            this.insertSql = dialect == DatabaseDialect.POSTGRESQL
+                    ? "INSERT INTO " + table + " (" + column + ") VALUES (?) ON CONFLICT (" + column + ") DO NOTHING"
+                    : "MERGE INTO " + table + " AS d USING (VALUES (CAST(? AS VARCHAR(200)))) AS v (" + column + ") " +
+                    "ON d." + column + " = v." + column + " " +
+                    "WHEN NOT MATCHED THEN INSERT (" + column + ") VALUES (v." + column + ")";
+            this.selectIdSql = "SELECT id FROM " + table + " WHERE " + column + " = ?";
+            this.selectValueSql = "SELECT " + column + " FROM " + table + " WHERE id = ?";
+        }
+
+        int getOrCreateId(String value) {
+            Integer id = findId(value);
+            if (id != null) {
+                return id;
+            }
+            insertTransaction.executeWithoutResult(status -> jdbcTemplate.update(insertSql, value));
+            return cache(value, jdbcTemplate.queryForObject(selectIdSql, Integer.class, value));
+        }
+
+        Integer findId(String value) {
+            Integer id = ids.get(value);
+            if (id != null) {
+                return id;
+            }
+            List<Integer> found = jdbcTemplate.queryForList(selectIdSql, Integer.class, value);
+            return found.isEmpty() ? null : cache(value, found.getFirst());
+        }
+
+        String value(int id) {
+            String value = values.get(id);
+            if (value != null) {
+                return value;
+            }
+            try {
+                return values.computeIfAbsent(id, key ->
+                        jdbcTemplate.queryForObject(selectValueSql, String.class, key));
+            } catch (EmptyResultDataAccessException e) {
+                throw new IllegalStateException("Unknown dictionary id " + id, e);
+            }
+        }
+
+        private int cache(String value, int id) {
+            ids.put(value, id);
+            values.put(id, value);
+            return id;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package ewm.stat.feed;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Numbers committed hit batches and remembers which uris each of the last {@code stats.feed.capacity} batches
+ * touched, so that subscribers can ask what changed after the sequence they have seen. Sequences restart with
+ * every server start; the random epoch lets subscribers notice that and ask for a snapshot.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "stats.feed.enabled", havingValue = "true")
+public class ViewChangeFeed {
+    private final String epoch = UUID.randomUUID().toString();
+    private final int capacity;
+    private final Deque<Change> changes = new ArrayDeque<>();
+    private long sequence;
+
+    public ViewChangeFeed(@Value("${stats.feed.capacity:10000}") int capacity) {
+        this.capacity = capacity;
+    }
+
+    public synchronized void record(int[] uriIds) {
+        changes.addLast(new Change(++sequence, uriIds));
+        if (changes.size() > capacity) {
+            changes.removeFirst();
+        }
+        notifyAll();
+    }
+
+    /**
+     * Waits up to {@code waitMs} for batches after {@code since}. Returns a snapshot request if the subscriber
+     * comes from another epoch or has fallen behind the retained changes.
+     */
+    public synchronized FeedChanges await(String subscriberEpoch, long since, long waitMs)
+            throws InterruptedException {
+        if (!epoch.equals(subscriberEpoch) || since > sequence || since < oldestKnownSequence()) {
+            return new FeedChanges(epoch, sequence, true, Set.of());
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMs);
+        long remaining;
+        while (sequence == since && (remaining = deadline - System.nanoTime()) > 0) {
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        if (since < oldestKnownSequence()) {
+            return new FeedChanges(epoch, sequence, true, Set.of());
+        }
+        Set<Integer> uriIds = new HashSet<>();
+        Iterator<Change> newestFirst = changes.descendingIterator();
+        while (newestFirst.hasNext()) {
+            Change change = newestFirst.next();
+            if (change.sequence() <= since) {
+                break;
+            }
+            for (int uriId : change.uriIds()) {
+                uriIds.add(uriId);
+            }
+        }
+        return new FeedChanges(epoch, sequence, false, uriIds);
+    }
+
+    /**
+     * Sequence a subscriber must have seen at least for the retained changes to be complete.
+     */
+    private long oldestKnownSequence() {
+        return changes.isEmpty() ? sequence : changes.getFirst().sequence() - 1;
+    }
+
+    public record FeedChanges(String epoch, long sequence, boolean snapshot, Set<Integer> uriIds) {
+    }
+
+    private record Change(long sequence, int[] uriIds) {
+    }
+}
@@ -0,0 +1,10 @@
+package ewm.stat.hot;
+
+import java.time.LocalDateTime;
+
+/**
+ * Minute-aligned part {@code [from, to)} of a /stats range that {@link HotWindowCounters} can answer
+ * from memory. Anything before {@code from} or after {@code to} has to be read from the database.
+ */
+public record HotRange(LocalDateTime from, LocalDateTime to) {
+}
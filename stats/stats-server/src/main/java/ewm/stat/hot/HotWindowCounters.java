@@ -0,0 +1,481 @@
+package ewm.stat.hot;
+
+import ewm.stat.EndpointHit;
+import ewm.stat.StatKey;
+import ewm.stat.dictionary.HitDictionary;
+import ewm.stat.sketch.Hashing;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Per-minute hit counters and visitor sets for the last {@code stats.hot-window.minutes} minutes,
+ * kept in memory so that /stats calls about recent traffic don't have to touch the database.
+ * <p>
+ * Counters live in a ring of minute slots per (app, uri). Entries are found by a 64-bit hash of the
+ * uri in chained tables, one per lock stripe. Hits are recorded after their transaction commits and
+ * the window is reloaded from endpoint_hits on startup, so the counters only see what this instance
+ * wrote: with several stats-server instances behind a balancer the window must stay disabled, as it is by
+ * default.
+ * <p>
+ * Hits timestamped more than {@code stats.hot-window.lookahead-minutes} into the future don't fit the
+ * ring; they are left to the database and the window stops answering for anything up to their minute.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "stats.hot-window.enabled", havingValue = "true")
+public class HotWindowCounters {
+    private static final String SELECT_RECENT_HITS = "SELECT app_id, uri_id, ip, timestamp, hits FROM endpoint_hits " +
+            "WHERE timestamp >= ?";
+    private static final String SELECT_RAW_VISITORS = "SELECT DISTINCT app_id, uri_id, ip FROM endpoint_hits " +
+            "WHERE timestamp >= :from AND timestamp < :to ";
+    private static final String URIS_FILTER = "AND uri_id IN (:uriIds)";
+    private static final long NOT_LOADED = Long.MAX_VALUE;
+    private static final long EMPTY_SLOT = Long.MIN_VALUE;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final HitDictionary dictionary;
+    private final JdbcTemplate loadTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int windowMinutes;
+    private final int lookaheadMinutes;
+    private final int slotCount;
+    private final Stripe[] stripes;
+    private final AtomicLong skippedUpToMinute = new AtomicLong(EMPTY_SLOT);
+    private volatile long loadedFromMinute = NOT_LOADED;
+
+    public HotWindowCounters(NamedParameterJdbcTemplate jdbcTemplate, HitDictionary dictionary, DataSource dataSource,
+                             PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                             @Value("${stats.hot-window.minutes:60}") int windowMinutes,
+                             @Value("${stats.hot-window.lookahead-minutes:5}") int lookaheadMinutes,
+                             @Value("${stats.hot-window.stripes:64}") int stripeCount,
+                             @Value("${stats.stream.fetch-size:1000}") int fetchSize) {
+        if (windowMinutes <= 0 || lookaheadMinutes < 0 || Integer.bitCount(stripeCount) != 1) {
+            throw new IllegalArgumentException("Invalid stats.hot-window settings");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.dictionary = dictionary;
+        this.loadTemplate = new JdbcTemplate(dataSource);
+        this.loadTemplate.setFetchSize(fetchSize);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.windowMinutes = windowMinutes;
+        this.lookaheadMinutes = lookaheadMinutes;
+        this.slotCount = windowMinutes + lookaheadMinutes;
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe();
+        }
+        Gauge.builder("stats.hot_window.memory", this, HotWindowCounters::estimateMemory)
+                .description("Estimated heap used by the in-memory hot window counters")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("stats.hot_window.keys", this, HotWindowCounters::keyCount)
+                .description("Number of (app, uri) pairs tracked by the hot window")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Loads the current window from the database with a single query, so from one consistent snapshot.
+     * HitBatchWriter depends on this bean, so this runs before any hit can be written and recorded: WAL
+     * replay only starts once all singletons are created and the web server even later. A hit is therefore
+     * either in the snapshot or recorded after its commit, never both.
+     */
+    @PostConstruct
+    public void load() {
+        long fromMinute = currentMinute() - windowMinutes + 1;
+        long started = System.nanoTime();
+        AtomicLong loaded = new AtomicLong();
+        transactionTemplate.executeWithoutResult(status ->
+                loadTemplate.query(SELECT_RECENT_HITS, rs -> {
+                    record(dictionary.app(rs.getInt("app_id")), dictionary.uri(rs.getInt("uri_id")),
+                            Hashing.hash64(rs.getBytes("ip")), rs.getTimestamp("timestamp").toLocalDateTime(),
+                            rs.getInt("hits"), currentMinute());
+                    loaded.incrementAndGet();
+                }, Timestamp.valueOf(toTime(fromMinute))));
+        loadedFromMinute = fromMinute;
+        log.info("Loaded {} hits into the {} minute hot window in {} ms", loaded.get(), windowMinutes,
+                (System.nanoTime() - started) / 1_000_000);
+    }
+
+    public void record(List<EndpointHit> hits) {
+        long current = currentMinute();
+        for (EndpointHit hit : hits) {
+            record(hit.getApp(), hit.getUri(), Hashing.hashIp(hit.getIp()), hit.getTimestamp(), hit.getHits(),
+                    current);
+        }
+    }
+
+    /**
+     * Returns the minute-aligned part of {@code [from, to)} answerable from memory, or null when there
+     * is none.
+     */
+    public HotRange cover(LocalDateTime from, LocalDateTime to) {
+        long current = currentMinute();
+        long horizon = current + lookaheadMinutes;
+        long coveredFrom = Math.max(loadedFromMinute,
+                Math.max(current - windowMinutes + 1, skippedUpToMinute.get() + 1));
+        long lo = Math.max(ceilMinute(from), coveredFrom);
+        long hi = floorMinute(to);
+        if (hi > horizon) {
+            // nothing past the horizon has been committed, memory is complete up to the very end
+            return lo <= horizon ? new HotRange(toTime(lo), to) : null;
+        }
+        return lo < hi ? new HotRange(toTime(lo), toTime(hi)) : null;
+    }
+
+    public void addHits(Map<StatKey, Long> target, HotRange range, List<String> uris) {
+        long from = floorMinute(range.from());
+        long to = Math.min(ceilMinute(range.to()), currentMinute() + lookaheadMinutes + 1);
+        forEachEntry(uris, entry -> {
+            long hits = entry.sumHits(from, to);
+            if (hits > 0) {
+                target.merge(new StatKey(entry.app, entry.uri), hits, Long::sum);
+            }
+        });
+    }
+
+    /**
+     * Counts distinct visitors in {@code [from, to)}: memory answers {@code range}, the less than a
+     * minute long edges around it are read from raw hits.
+     */
+    public Map<StatKey, Long> countVisitors(LocalDateTime from, LocalDateTime to, HotRange range,
+                                           List<String> uris) {
+        long rangeFrom = floorMinute(range.from());
+        long rangeTo = Math.min(ceilMinute(range.to()), currentMinute() + lookaheadMinutes + 1);
+        Map<StatKey, LongHashSet> visitors = new HashMap<>();
+        forEachEntry(uris, entry -> entry.collectVisitors(rangeFrom, rangeTo,
+                visitors.computeIfAbsent(new StatKey(entry.app, entry.uri), k -> new LongHashSet())));
+        addRawVisitors(visitors, from, range.from(), uris);
+        addRawVisitors(visitors, range.to(), to, uris);
+        Map<StatKey, Long> counts = new HashMap<>();
+        visitors.forEach((key, ips) -> {
+            if (ips.size() > 0) {
+                counts.put(key, (long) ips.size());
+            }
+        });
+        return counts;
+    }
+
+    @Scheduled(fixedDelayString = "${stats.hot-window.evict-interval-ms:60000}")
+    public void evict() {
+        long oldest = currentMinute() - windowMinutes + 1;
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                stripe.evict(oldest);
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    private void record(String app, String uri, long ipHash, LocalDateTime timestamp, long weight, long current) {
+        long minute = floorMinute(timestamp);
+        if (minute > current + lookaheadMinutes) {
+            skippedUpToMinute.accumulateAndGet(minute, Math::max);
+            return;
+        }
+        if (minute <= current - windowMinutes) {
+            return;
+        }
+        long uriHash = hashUri(uri);
+        Stripe stripe = stripeFor(uriHash);
+        stripe.lock.lock();
+        try {
+            stripe.getOrCreate(uriHash, app, uri, slotCount).add(minute, ipHash, weight);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    private void forEachEntry(List<String> uris, Consumer<UriCounters> action) {
+        if (uris == null) {
+            for (Stripe stripe : stripes) {
+                stripe.lock.lock();
+                try {
+                    stripe.forEach(action);
+                } finally {
+                    stripe.lock.unlock();
+                }
+            }
+            return;
+        }
+        for (String uri : new LinkedHashSet<>(uris)) {
+            long uriHash = hashUri(uri);
+            Stripe stripe = stripeFor(uriHash);
+            stripe.lock.lock();
+            try {
+                stripe.forEachWithUri(uriHash, uri, action);
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    private void addRawVisitors(Map<StatKey, LongHashSet> target, LocalDateTime from, LocalDateTime to,
+                                List<String> uris) {
+        if (!from.isBefore(to)) {
+            return;
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", Timestamp.valueOf(from))
+                .addValue("to", Timestamp.valueOf(to));
+        String sql = SELECT_RAW_VISITORS;
+        if (uris != null) {
+            List<Integer> uriIds = dictionary.findUriIds(uris);
+            if (uriIds.isEmpty()) {
+                return;
+            }
+            sql += URIS_FILTER;
+            params.addValue("uriIds", uriIds);
+        }
+        jdbcTemplate.query(sql, params, rs -> {
+            StatKey key = new StatKey(dictionary.app(rs.getInt("app_id")), dictionary.uri(rs.getInt("uri_id")));
+            target.computeIfAbsent(key, k -> new LongHashSet()).add(Hashing.hash64(rs.getBytes("ip")));
+        });
+    }
+
+    private long estimateMemory() {
+        long bytes = 0;
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                bytes += stripe.sizeInBytes();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return bytes;
+    }
+
+    private long keyCount() {
+        long count = 0;
+        for (Stripe stripe : stripes) {
+            count += stripe.size;
+        }
+        return count;
+    }
+
+    private Stripe stripeFor(long uriHash) {
+        return stripes[(int) (uriHash >>> 32) & (stripes.length - 1)];
+    }
+
+    private static long hashUri(String uri) {
+        return Hashing.hash64(uri.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long currentMinute() {
+        return floorMinute(LocalDateTime.now());
+    }
+
+    private static long floorMinute(LocalDateTime time) {
+        return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+
+    private static long ceilMinute(LocalDateTime time) {
+        long floor = floorMinute(time);
+        return toTime(floor).equals(time) ? floor : floor + 1;
+    }
+
+    private static LocalDateTime toTime(long minute) {
+        return LocalDateTime.ofEpochSecond(minute * 60, 0, ZoneOffset.UTC);
+    }
+
+    private static final class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private UriCounters[] table = new UriCounters[16];
+        private volatile int size;
+
+        UriCounters getOrCreate(long uriHash, String app, String uri, int slotCount) {
+            int index = (int) uriHash & (table.length - 1);
+            for (UriCounters entry = table[index]; entry != null; entry = entry.next) {
+                if (entry.uriHash == uriHash && entry.uri.equals(uri) && entry.app.equals(app)) {
+                    return entry;
+                }
+            }
+            UriCounters entry = new UriCounters(uriHash, app, uri, slotCount);
+            entry.next = table[index];
+            table[index] = entry;
+            size++;
+            if (size > table.length) {
+                resize();
+            }
+            return entry;
+        }
+
+        void forEachWithUri(long uriHash, String uri, Consumer<UriCounters> action) {
+            for (UriCounters entry = table[(int) uriHash & (table.length - 1)]; entry != null; entry = entry.next) {
+                if (entry.uriHash == uriHash && entry.uri.equals(uri)) {
+                    action.accept(entry);
+                }
+            }
+        }
+
+        void forEach(Consumer<UriCounters> action) {
+            for (UriCounters head : table) {
+                for (UriCounters entry = head; entry != null; entry = entry.next) {
+                    action.accept(entry);
+                }
+            }
+        }
+
+        void evict(long oldestMinute) {
+            int remaining = 0;
+            for (int i = 0; i < table.length; i++) {
+                UriCounters kept = null;
+                UriCounters entry = table[i];
+                while (entry != null) {
+                    UriCounters next = entry.next;
+                    if (entry.evict(oldestMinute)) {
+                        entry.next = kept;
+                        kept = entry;
+                        remaining++;
+                    }
+                    entry = next;
+                }
+                table[i] = kept;
+            }
+            size = remaining;
+        }
+
+        long sizeInBytes() {
+            long bytes = 16L + 4L * table.length;
+            for (UriCounters head : table) {
+                for (UriCounters entry = head; entry != null; entry = entry.next) {
+                    bytes += entry.sizeInBytes();
+                }
+            }
+            return bytes;
+        }
+
+        private void resize() {
+            UriCounters[] resized = new UriCounters[table.length * 2];
+            for (UriCounters head : table) {
+                UriCounters entry = head;
+                while (entry != null) {
+                    UriCounters next = entry.next;
+                    int index = (int) entry.uriHash & (resized.length - 1);
+                    entry.next = resized[index];
+                    resized[index] = entry;
+                    entry = next;
+                }
+            }
+            table = resized;
+        }
+    }
+
+    private static final class UriCounters {
+        private final long uriHash;
+        private final String app;
+        private final String uri;
+        private final long[] minutes;
+        private final long[] hits;
+        private final LongHashSet[] visitors;
+        private UriCounters next;
+
+        UriCounters(long uriHash, String app, String uri, int slotCount) {
+            this.uriHash = uriHash;
+            this.app = app;
+            this.uri = uri;
+            this.minutes = new long[slotCount];
+            this.hits = new long[slotCount];
+            this.visitors = new LongHashSet[slotCount];
+            Arrays.fill(minutes, EMPTY_SLOT);
+        }
+
+        void add(long minute, long ipHash, long weight) {
+            int slot = slot(minute);
+            if (minutes[slot] != minute) {
+                minutes[slot] = minute;
+                hits[slot] = 0;
+                if (visitors[slot] != null) {
+                    visitors[slot].clear();
+                }
+            }
+            hits[slot] += weight;
+            if (visitors[slot] == null) {
+                visitors[slot] = new LongHashSet();
+            }
+            visitors[slot].add(ipHash);
+        }
+
+        long sumHits(long from, long to) {
+            long sum = 0;
+            for (long minute = from; minute < to; minute++) {
+                int slot = slot(minute);
+                if (minutes[slot] == minute) {
+                    sum += hits[slot];
+                }
+            }
+            return sum;
+        }
+
+        void collectVisitors(long from, long to, LongHashSet target) {
+            for (long minute = from; minute < to; minute++) {
+                int slot = slot(minute);
+                if (minutes[slot] == minute) {
+                    target.addAll(visitors[slot]);
+                }
+            }
+        }
+
+        /**
+         * Releases slots older than {@code oldestMinute}, returns false when nothing is left.
+         */
+        boolean evict(long oldestMinute) {
+            boolean live = false;
+            for (int slot = 0; slot < minutes.length; slot++) {
+                if (minutes[slot] == EMPTY_SLOT) {
+                    continue;
+                }
+                if (minutes[slot] < oldestMinute) {
+                    minutes[slot] = EMPTY_SLOT;
+                    hits[slot] = 0;
+                    visitors[slot] = null;
+                } else {
+                    live = true;
+                }
+            }
+            return live;
+        }
+
+        long sizeInBytes() {
+            long bytes = 48L + 40L + app.length() + 40L + uri.length() + 3 * 16L + 20L * minutes.length;
+            for (LongHashSet set : visitors) {
+                if (set != null) {
+                    bytes += set.sizeInBytes();
+                }
+            }
+            return bytes;
+        }
+
+        private int slot(long minute) {
+            return (int) Math.floorMod(minute, (long) minutes.length);
+        }
+    }
+}
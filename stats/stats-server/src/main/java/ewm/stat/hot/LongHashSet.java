@@ -0,0 +1,89 @@
+package ewm.stat.hot;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing set of primitive longs, used for visitor IP hashes so that a window of unique
+ * visitors doesn't cost a boxed {@code Long} and a map node per element. Not thread-safe.
+ */
+final class LongHashSet {
+    private static final int MIN_CAPACITY = 8;
+    private static final long EMPTY = 0L;
+
+    private long[] slots;
+    private int size;
+    private boolean containsZero;
+
+    LongHashSet() {
+        slots = new long[MIN_CAPACITY];
+    }
+
+    boolean add(long value) {
+        if (value == EMPTY) {
+            boolean added = !containsZero;
+            containsZero = true;
+            return added;
+        }
+        if ((size + 1) * 4L > slots.length * 3L) {
+            resize(slots.length * 2);
+        }
+        if (insert(slots, value)) {
+            size++;
+            return true;
+        }
+        return false;
+    }
+
+    void addAll(LongHashSet other) {
+        if (other.containsZero) {
+            add(EMPTY);
+        }
+        for (long value : other.slots) {
+            if (value != EMPTY) {
+                add(value);
+            }
+        }
+    }
+
+    int size() {
+        return containsZero ? size + 1 : size;
+    }
+
+    void clear() {
+        if (slots.length > MIN_CAPACITY) {
+            slots = new long[MIN_CAPACITY];
+        } else {
+            Arrays.fill(slots, EMPTY);
+        }
+        size = 0;
+        containsZero = false;
+    }
+
+    long sizeInBytes() {
+        return 16L + 8L * slots.length;
+    }
+
+    private void resize(int capacity) {
+        long[] resized = new long[capacity];
+        for (long value : slots) {
+            if (value != EMPTY) {
+                insert(resized, value);
+            }
+        }
+        slots = resized;
+    }
+
+    private static boolean insert(long[] table, long value) {
+        int mask = table.length - 1;
+        // values are already well-mixed hashes, the low bits are good enough for an index
+        int index = (int) value & mask;
+        while (table[index] != EMPTY) {
+            if (table[index] == value) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        table[index] = value;
+        return true;
+    }
+}
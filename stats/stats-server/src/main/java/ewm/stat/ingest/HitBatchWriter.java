@@ -0,0 +1,111 @@
+package ewm.stat.ingest;
+
+import ewm.stat.EndpointHit;
+import ewm.stat.IpAddresses;
+import ewm.stat.dictionary.HitDictionary;
+import ewm.stat.feed.ViewChangeFeed;
+import ewm.stat.hot.HotWindowCounters;
+import ewm.stat.rollup.HitRollupRepository;
+import ewm.stat.rollup.RollupGranularity;
+import ewm.stat.rollup.RollupKey;
+import ewm.stat.sketch.Hashing;
+import ewm.stat.sketch.HitSketchRepository;
+import ewm.stat.sketch.HyperLogLog;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+@Component
+@RequiredArgsConstructor
+public class HitBatchWriter {
+    private static final String INSERT_HIT = "INSERT INTO endpoint_hits (app_id, uri_id, ip, timestamp, hits) " +
+            "VALUES (?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final HitDictionary dictionary;
+    private final HitRollupRepository rollupRepository;
+    private final HitSketchRepository sketchRepository;
+    private final Optional<HotWindowCounters> hotWindow;
+    private final Optional<ViewChangeFeed> changeFeed;
+
+    /**
+     * Stores the hits in one transaction. Ips are stored as {@link IpAddresses#encode(String)}. Dictionary ids
+     * are resolved before the transaction opens: a new app or uri is committed on its own, and the batch
+     * never needs a second connection while it holds one.
+     */
+    public void write(List<EndpointHit> hits) {
+        if (hits.isEmpty()) {
+            return;
+        }
+        List<EncodedHit> encoded = hits.stream().map(this::encode).toList();
+        transactionTemplate.executeWithoutResult(status -> store(hits, encoded));
+    }
+
+    private void store(List<EndpointHit> hits, List<EncodedHit> encoded) {
+        jdbcTemplate.batchUpdate(INSERT_HIT, encoded, encoded.size(), (ps, hit) -> {
+            ps.setInt(1, hit.appId());
+            ps.setInt(2, hit.uriId());
+            ps.setBytes(3, hit.ip());
+            ps.setTimestamp(4, Timestamp.valueOf(hit.timestamp()));
+            ps.setInt(5, hit.hits());
+        });
+        rollupRepository.increment(rollupDeltas(encoded));
+        if (sketchRepository.isEnabled()) {
+            sketchRepository.merge(sketchDeltas(encoded));
+        }
+        if (hotWindow.isPresent() || changeFeed.isPresent()) {
+            int[] uriIds = encoded.stream().mapToInt(EncodedHit::uriId).distinct().toArray();
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    hotWindow.ifPresent(counters -> counters.record(hits));
+                    changeFeed.ifPresent(feed -> feed.record(uriIds));
+                }
+            });
+        }
+    }
+
+    private EncodedHit encode(EndpointHit hit) {
+        return new EncodedHit(dictionary.appId(hit.getApp()), dictionary.uriId(hit.getUri()),
+                IpAddresses.encode(hit.getIp()), hit.getTimestamp(), Math.toIntExact(hit.getHits()));
+    }
+
+    private SortedMap<RollupKey, Long> rollupDeltas(List<EncodedHit> hits) {
+        SortedMap<RollupKey, Long> deltas = new TreeMap<>();
+        for (EncodedHit hit : hits) {
+            for (RollupGranularity granularity : RollupGranularity.values()) {
+                RollupKey key = new RollupKey(granularity, granularity.floor(hit.timestamp()),
+                        hit.appId(), hit.uriId());
+                deltas.merge(key, (long) hit.hits(), Long::sum);
+            }
+        }
+        return deltas;
+    }
+
+    private SortedMap<RollupKey, HyperLogLog> sketchDeltas(List<EncodedHit> hits) {
+        SortedMap<RollupKey, HyperLogLog> deltas = new TreeMap<>();
+        for (EncodedHit hit : hits) {
+            long ipHash = Hashing.hash64(hit.ip());
+            for (RollupGranularity granularity : HitSketchRepository.GRANULARITIES) {
+                RollupKey key = new RollupKey(granularity, granularity.floor(hit.timestamp()),
+                        hit.appId(), hit.uriId());
+                deltas.computeIfAbsent(key, k -> sketchRepository.newSketch()).add(ipHash);
+            }
+        }
+        return deltas;
+    }
+
+    private record EncodedHit(int appId, int uriId, byte[] ip, LocalDateTime timestamp, int hits) {
+    }
+}
@@ -0,0 +1,209 @@
+package ewm.stat.ingest;
+
+import ewm.stat.EndpointHit;
+import ewm.stat.wal.HitWriteAheadLog;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accepts hits into a bounded in-memory queue and flushes them to the database from a single
+ * background thread, either when {@code stats.ingest.batch-size} hits are collected or when
+ * {@code stats.ingest.flush-interval-ms} has passed since the first hit of the batch. With the WAL
+ * enabled every accepted hit is logged first and the log is checkpointed after each stored batch.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "stats.ingest.async", havingValue = "true")
+public class HitIngestQueue {
+    private static final long MAX_RETRY_DELAY_MS = 30_000;
+
+    private final HitBatchWriter writer;
+    private final Optional<HitWriteAheadLog> wal;
+    private final BlockingQueue<PendingHit> queue;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    public HitIngestQueue(HitBatchWriter writer, Optional<HitWriteAheadLog> wal,
+                          @Value("${stats.ingest.queue-capacity:100000}") int capacity,
+                          @Value("${stats.ingest.batch-size:1000}") int batchSize,
+                          @Value("${stats.ingest.flush-interval-ms:200}") long flushIntervalMs) {
+        this.writer = writer;
+        this.wal = wal;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.worker = new Thread(this::run, "hit-ingest-writer");
+    }
+
+    @PostConstruct
+    public void start() {
+        worker.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        worker.interrupt();
+        worker.join(TimeUnit.SECONDS.toMillis(30));
+    }
+
+    /**
+     * Accepts all the hits or none of them, so a request is never left half queued. Synchronized so that
+     * capacity checked here is still free when the hits are added, and so that WAL sequence numbers follow
+     * queue order: a stored batch then covers every sequence number up to its last one.
+     */
+    public synchronized boolean offerAll(List<EndpointHit> hits) {
+        if (!running || queue.remainingCapacity() < hits.size()) {
+            return false;
+        }
+        for (EndpointHit hit : hits) {
+            long sequence = wal.map(writeAheadLog -> writeAheadLog.append(hit)).orElse(0L);
+            queue.add(new PendingHit(hit, sequence));
+        }
+        return true;
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    private void run() {
+        List<PendingHit> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                collect(batch);
+            } catch (InterruptedException e) {
+                queue.drainTo(batch, batchSize - batch.size());
+            }
+            if (!batch.isEmpty()) {
+                if (!flush(batch)) {
+                    return;
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    private void collect(List<PendingHit> batch) throws InterruptedException {
+        PendingHit first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        while (batch.size() < batchSize) {
+            if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            PendingHit next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    /**
+     * Stores the batch, retrying with exponential backoff while the database is unreachable. Meanwhile no further
+     * batch is taken, so the queue fills up and new hits are refused instead of being accepted and lost; the WAL
+     * checkpoint never moves past a hit that is not stored. Any other failure is a bad hit rather than an outage:
+     * the failing part is halved until the hits that fail on their own are found, and those are logged and
+     * skipped so that they cannot block the queue, nor the WAL replay after a restart. Returns false if the
+     * service is stopping before the batch could be stored: the worker then stops, and with the WAL the rest of
+     * the batch and everything after it is replayed on the next start.
+     */
+    private boolean flush(List<PendingHit> batch) {
+        Deque<List<PendingHit>> parts = new ArrayDeque<>();
+        parts.push(batch);
+        long delayMs = flushIntervalMs;
+        int attempt = 1;
+        while (!parts.isEmpty()) {
+            List<PendingHit> part = parts.peek();
+            try {
+                writer.write(part.stream().map(PendingHit::hit).toList());
+                stored(parts.pop());
+                attempt = 1;
+                delayMs = flushIntervalMs;
+                continue;
+            } catch (RuntimeException e) {
+                if (!isTransient(e)) {
+                    parts.pop();
+                    if (part.size() == 1) {
+                        log.error("Skipped hit {} that cannot be stored", describe(part.getFirst().hit()), e);
+                        stored(part);
+                    } else {
+                        log.warn("Failed to write {} hits, splitting them to find the bad ones", part.size(), e);
+                        parts.push(part.subList(part.size() / 2, part.size()));
+                        parts.push(part.subList(0, part.size() / 2));
+                    }
+                    continue;
+                }
+                log.warn("Failed to write batch of {} hits, attempt {}", part.size(), attempt++, e);
+            }
+            if (!running) {
+                int unstored = parts.stream().mapToInt(List::size).sum() + queue.size();
+                if (wal.isPresent()) {
+                    log.warn("Stopping with {} queued hits not stored, they are replayed from the WAL on start",
+                            unstored);
+                } else {
+                    log.error("Dropped {} queued hits, stats.wal.enabled is off", unstored);
+                }
+                return false;
+            }
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException ignore) {
+                // stop() interrupts, running is checked after the next attempt
+            }
+            delayMs = Math.min(delayMs * 2, MAX_RETRY_DELAY_MS);
+        }
+        return true;
+    }
+
+    /**
+     * Parts are written in queue order, so every hit up to the last one of a written part is stored.
+     */
+    private void stored(List<PendingHit> part) {
+        wal.ifPresent(writeAheadLog -> writeAheadLog.commit(part.getLast().sequence()));
+    }
+
+    /**
+     * Failures to reach the database, or to get a connection or transaction from it, go away by themselves.
+     */
+    private static boolean isTransient(RuntimeException e) {
+        return e instanceof TransientDataAccessException
+                || e instanceof RecoverableDataAccessException
+                || e instanceof DataAccessResourceFailureException
+                || e instanceof CannotCreateTransactionException;
+    }
+
+    private static String describe(EndpointHit hit) {
+        return hit.getApp() + " " + hit.getUri() + " " + hit.getIp() + " " + hit.getTimestamp();
+    }
+
+    private record PendingHit(EndpointHit hit, long sequence) {
+    }
+}
@@ -0,0 +1,110 @@
+package ewm.stat.ingest;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dto.EndpointHitDto;
+import dto.HitBinaryCodec;
+import ewm.exception.BadRequestException;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Reads hits one by one from either a JSON array or a stream of whitespace/newline separated
+ * JSON objects (NDJSON), or from a {@link HitBinaryCodec} body, handing them to the sink in chunks of
+ * {@code batchSize}.
+ */
+@Component
+@RequiredArgsConstructor
+public class HitStreamReader {
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+
+    public long read(InputStream body, int batchSize, Consumer<List<EndpointHitDto>> sink) {
+        List<EndpointHitDto> batch = new ArrayList<>(batchSize);
+        long count = 0;
+        try (JsonParser parser = objectMapper.createParser(body)) {
+            JsonToken token = parser.nextToken();
+            boolean array = token == JsonToken.START_ARRAY;
+            if (array) {
+                token = parser.nextToken();
+            }
+            while (token != null && token != JsonToken.END_ARRAY) {
+                if (token != JsonToken.START_OBJECT) {
+                    throw new BadRequestException("Hit #" + count + " is not a JSON object");
+                }
+                EndpointHitDto dto = objectMapper.readValue(parser, EndpointHitDto.class);
+                validate(dto, count);
+                batch.add(dto);
+                count++;
+                if (batch.size() == batchSize) {
+                    sink.accept(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+                token = parser.nextToken();
+            }
+            if (array && token == null) {
+                throw new BadRequestException("Unterminated JSON array after hit #" + count);
+            }
+        } catch (JsonProcessingException e) {
+            throw new BadRequestException("Malformed hit #" + count + ": " + e.getOriginalMessage());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (!batch.isEmpty()) {
+            sink.accept(batch);
+        }
+        return count;
+    }
+
+    /**
+     * Same as {@link #read} for a {@value HitBinaryCodec#MEDIA_TYPE} body.
+     */
+    public long readBinary(InputStream body, int batchSize, Consumer<List<EndpointHitDto>> sink) {
+        List<EndpointHitDto> batch = new ArrayList<>(batchSize);
+        long count = 0;
+        HitBinaryCodec.Reader reader = HitBinaryCodec.reader(body);
+        try {
+            EndpointHitDto dto;
+            while ((dto = reader.next()) != null) {
+                validate(dto, count);
+                batch.add(dto);
+                count++;
+                if (batch.size() == batchSize) {
+                    sink.accept(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+        } catch (StreamCorruptedException | EOFException e) {
+            throw new BadRequestException("Malformed hit #" + count + ": " + e.getMessage());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (!batch.isEmpty()) {
+            sink.accept(batch);
+        }
+        return count;
+    }
+
+    private void validate(EndpointHitDto dto, long index) {
+        Set<ConstraintViolation<EndpointHitDto>> violations = validator.validate(dto);
+        if (!violations.isEmpty()) {
+            ConstraintViolation<EndpointHitDto> violation = violations.iterator().next();
+            throw new BadRequestException("Hit #" + index + ": " + violation.getPropertyPath() + " "
+                    + violation.getMessage());
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package ewm.stat.partition;
+
+import ewm.DatabaseDialect;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps monthly (or {@code stats.partition.unit}) range partitions of endpoint_hits on PostgreSQL:
+ * creates the current and upcoming ones on start and ahead of time, and drops the ones that are entirely
+ * older than the retention period. On H2, which has no partitioning, retention falls back to a plain DELETE.
+ */
+@Slf4j
+@Component
+public class HitPartitionManager {
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final Pattern UPPER_BOUND = Pattern.compile("TO \\('([^']+)'\\)");
+    private static final String SELECT_PARTITIONS = "SELECT c.relname, pg_get_expr(c.relpartbound, c.oid) " +
+            "FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+            "WHERE i.inhparent = 'endpoint_hits'::regclass";
+    private static final String SELECT_DEFAULT_ROWS_EXIST = "SELECT EXISTS (SELECT 1 FROM endpoint_hits_default " +
+            "WHERE timestamp >= ? AND timestamp < ?)";
+    private static final String MOVE_DEFAULT_ROWS = "INSERT INTO endpoint_hits " +
+            "(id, app_id, uri_id, ip, timestamp, hits) SELECT id, app_id, uri_id, ip, timestamp, hits FROM endpoint_hits_default " +
+            "WHERE timestamp >= ? AND timestamp < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final DatabaseDialect dialect;
+    private final ChronoUnit unit;
+    private final int premake;
+    private final int retentionDays;
+
+    public HitPartitionManager(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                               DatabaseDialect dialect,
+                               @Value("${stats.partition.unit:MONTHS}") ChronoUnit unit,
+                               @Value("${stats.partition.premake:3}") int premake,
+                               @Value("${stats.retention.days:0}") int retentionDays,
+                               @Value("${stats.sketch.enabled:true}") boolean sketchEnabled) {
+        if (retentionDays > 0 && !sketchEnabled) {
+            throw new IllegalArgumentException("stats.retention.days needs stats.sketch.enabled, unique counts "
+                    + "over dropped hits are answered from the sketches");
+        }
+        if (unit != ChronoUnit.DAYS && unit != ChronoUnit.WEEKS && unit != ChronoUnit.MONTHS) {
+            throw new IllegalArgumentException("Unsupported partition unit: " + unit);
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.dialect = dialect;
+        this.unit = unit;
+        this.premake = premake;
+        this.retentionDays = retentionDays;
+    }
+
+    /**
+     * Runs while the context starts, before the web server and WAL replay take any hits, so that current hits
+     * never land in the default partition just because their partition did not exist yet.
+     */
+    @PostConstruct
+    public void createUpcoming() {
+        if (dialect == DatabaseDialect.POSTGRESQL) {
+            createPartitions(LocalDate.now());
+        }
+    }
+
+    @Scheduled(cron = "${stats.partition.cron:0 0 3 * * *}")
+    public void maintain() {
+        LocalDate today = LocalDate.now();
+        if (dialect == DatabaseDialect.POSTGRESQL) {
+            createPartitions(today);
+        }
+        if (retentionDays > 0) {
+            dropExpired(today.minusDays(retentionDays).atStartOfDay());
+        }
+    }
+
+    /**
+     * Start of the range in which raw hits are still kept, null if they are kept forever. Hits before it may
+     * already be dropped and must be read from rollups and sketches instead.
+     */
+    public LocalDateTime retainedSince() {
+        return retentionDays > 0 ? LocalDate.now().minusDays(retentionDays).atStartOfDay() : null;
+    }
+
+    private void createPartitions(LocalDate today) {
+        LocalDate start = periodStart(today);
+        for (int i = 0; i <= premake; i++) {
+            LocalDate end = start.plus(1, unit);
+            String name = "endpoint_hits_p" + start.format(PARTITION_SUFFIX);
+            if (!exists(name)) {
+                createPartition(name, start, end);
+            }
+            start = end;
+        }
+    }
+
+    private boolean exists(String name) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL",
+                Boolean.class, name));
+    }
+
+    /**
+     * PostgreSQL refuses to create a partition while the default partition holds rows of its range. Such rows
+     * are moved: the default partition is detached, the new partition created, the rows re-inserted through
+     * the parent and the default partition attached again, all in one transaction.
+     */
+    private void createPartition(String name, LocalDate start, LocalDate end) {
+        String create = "CREATE TABLE IF NOT EXISTS " + name + " PARTITION OF endpoint_hits " +
+                "FOR VALUES FROM ('" + start + "') TO ('" + end + "')";
+        Timestamp from = Timestamp.valueOf(start.atStartOfDay());
+        Timestamp to = Timestamp.valueOf(end.atStartOfDay());
+        transactionTemplate.executeWithoutResult(status -> {
+            boolean misplaced = Boolean.TRUE.equals(jdbcTemplate.queryForObject(SELECT_DEFAULT_ROWS_EXIST,
+                    Boolean.class, from, to));
+            if (!misplaced) {
+                jdbcTemplate.execute(create);
+                return;
+            }
+            jdbcTemplate.execute("ALTER TABLE endpoint_hits DETACH PARTITION endpoint_hits_default");
+            jdbcTemplate.execute(create);
+            int moved = jdbcTemplate.update(MOVE_DEFAULT_ROWS, from, to);
+            jdbcTemplate.update("DELETE FROM endpoint_hits_default WHERE timestamp >= ? AND timestamp < ?",
+                    from, to);
+            jdbcTemplate.execute("ALTER TABLE endpoint_hits ATTACH PARTITION endpoint_hits_default DEFAULT");
+            log.info("Moved {} hits from the default partition to {}", moved, name);
+        });
+    }
+
+    private void dropExpired(LocalDateTime cutoff) {
+        if (dialect != DatabaseDialect.POSTGRESQL) {
+            int deleted = jdbcTemplate.update("DELETE FROM endpoint_hits WHERE timestamp < ?", Timestamp.valueOf(cutoff));
+            log.info("Deleted {} hits older than {}", deleted, cutoff);
+            return;
+        }
+        List<String[]> partitions = jdbcTemplate.query(SELECT_PARTITIONS, (rs, rowNum) ->
+                new String[]{rs.getString(1), rs.getString(2)});
+        for (String[] partition : partitions) {
+            Matcher matcher = UPPER_BOUND.matcher(partition[1]);
+            if (!matcher.find()) {
+                continue;
+            }
+            LocalDateTime upperBound = Timestamp.valueOf(matcher.group(1)).toLocalDateTime();
+            if (!upperBound.isAfter(cutoff)) {
+                jdbcTemplate.execute("ALTER TABLE endpoint_hits DETACH PARTITION " + partition[0]);
+                jdbcTemplate.execute("DROP TABLE " + partition[0]);
+                log.info("Dropped partition {} with hits before {}", partition[0], upperBound);
+            }
+        }
+        jdbcTemplate.update("DELETE FROM endpoint_hits_default WHERE timestamp < ?", Timestamp.valueOf(cutoff));
+    }
+
+    private LocalDate periodStart(LocalDate date) {
+        return switch (unit) {
+            case MONTHS -> date.withDayOfMonth(1);
+            case WEEKS -> date.minusDays(date.getDayOfWeek().getValue() - 1L);
+            default -> date;
+        };
+    }
+}
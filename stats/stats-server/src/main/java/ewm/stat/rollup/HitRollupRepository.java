@@ -0,0 +1,76 @@
+package ewm.stat.rollup;
+
+import dto.ViewStatsDto;
+import ewm.DatabaseDialect;
+import ewm.stat.EndpointHitRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+@Repository
+@RequiredArgsConstructor
+public class HitRollupRepository {
+    private static final String UPSERT_POSTGRESQL = "INSERT INTO endpoint_hit_rollups " +
+            "(granularity, bucket_start, app_id, uri_id, hits) VALUES (?, ?, ?, ?, ?) " +
+            "ON CONFLICT (granularity, bucket_start, app_id, uri_id) " +
+            "DO UPDATE SET hits = endpoint_hit_rollups.hits + EXCLUDED.hits";
+    private static final String UPSERT_H2 = "MERGE INTO endpoint_hit_rollups AS r " +
+            "USING (VALUES (CAST(? AS VARCHAR(10)), CAST(? AS TIMESTAMP), CAST(? AS INT), " +
+            "CAST(? AS INT), CAST(? AS BIGINT))) AS v (granularity, bucket_start, app_id, uri_id, hits) " +
+            "ON r.granularity = v.granularity AND r.bucket_start = v.bucket_start " +
+            "AND r.app_id = v.app_id AND r.uri_id = v.uri_id " +
+            "WHEN MATCHED THEN UPDATE SET hits = r.hits + v.hits " +
+            "WHEN NOT MATCHED THEN INSERT (granularity, bucket_start, app_id, uri_id, hits) " +
+            "VALUES (v.granularity, v.bucket_start, v.app_id, v.uri_id, v.hits)";
+    private static final String SUM_HITS = "SELECT app_id, uri_id, SUM(hits) AS hits " +
+            "FROM endpoint_hit_rollups " +
+            "WHERE granularity = :granularity AND bucket_start >= :from AND bucket_start < :to ";
+    private static final String URIS_FILTER = "AND uri_id IN (:uriIds) ";
+    private static final String GROUP_BY = "GROUP BY app_id, uri_id";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final DatabaseDialect dialect;
+    private final EndpointHitRepository hitRepository;
+
+    /**
+     * Adds the deltas to their buckets. Keys are sorted so that concurrent batches lock rollup rows in
+     * the same order.
+     */
+    public void increment(SortedMap<RollupKey, Long> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        String sql = dialect == DatabaseDialect.POSTGRESQL ? UPSERT_POSTGRESQL : UPSERT_H2;
+        List<Map.Entry<RollupKey, Long>> rows = new ArrayList<>(deltas.entrySet());
+        jdbcTemplate.getJdbcTemplate().batchUpdate(sql, rows, rows.size(), (ps, row) -> {
+            RollupKey key = row.getKey();
+            ps.setString(1, key.granularity().name());
+            ps.setTimestamp(2, Timestamp.valueOf(key.bucketStart()));
+            ps.setInt(3, key.appId());
+            ps.setInt(4, key.uriId());
+            ps.setLong(5, row.getValue());
+        });
+    }
+
+    public List<ViewStatsDto> sumHits(RollupGranularity granularity, LocalDateTime from, LocalDateTime to,
+                                      List<Integer> uriIds) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("granularity", granularity.name())
+                .addValue("from", Timestamp.valueOf(from))
+                .addValue("to", Timestamp.valueOf(to));
+        String sql = SUM_HITS;
+        if (uriIds != null) {
+            sql += URIS_FILTER;
+            params.addValue("uriIds", uriIds);
+        }
+        return jdbcTemplate.query(sql + GROUP_BY, params, hitRepository.statsRowMapper());
+    }
+}
@@ -0,0 +1,14 @@
+package ewm.stat.rollup;
+
+import java.time.LocalDateTime;
+
+/**
+ * Half-open time range {@code [from, to)} answered either from rollup buckets of the given
+ * granularity or, when {@code granularity} is null, from raw hits.
+ */
+public record QuerySegment(RollupGranularity granularity, LocalDateTime from, LocalDateTime to) {
+
+    public boolean isRaw() {
+        return granularity == null;
+    }
+}
@@ -0,0 +1,17 @@
+package ewm.stat.rollup;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+
+public record RollupKey(RollupGranularity granularity, LocalDateTime bucketStart, int appId, int uriId)
+        implements Comparable<RollupKey> {
+    private static final Comparator<RollupKey> ORDER = Comparator.comparing(RollupKey::granularity)
+            .thenComparing(RollupKey::bucketStart)
+            .thenComparingInt(RollupKey::appId)
+            .thenComparingInt(RollupKey::uriId);
+
+    @Override
+    public int compareTo(RollupKey other) {
+        return ORDER.compare(this, other);
+    }
+}
@@ -0,0 +1,42 @@
+package ewm.stat.rollup;
+
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits {@code [from, to)} into the coarsest bucket ranges that fit inside it. Whatever is left at
+ * the edges is handed to the next finer granularity and finally to raw hits.
+ */
+@Component
+public class StatsQueryPlanner {
+
+    public List<QuerySegment> plan(LocalDateTime from, LocalDateTime to, List<RollupGranularity> coarseToFine) {
+        List<QuerySegment> segments = new ArrayList<>();
+        cover(from, to, coarseToFine, 0, segments);
+        return segments;
+    }
+
+    private void cover(LocalDateTime from, LocalDateTime to, List<RollupGranularity> levels, int level,
+                       List<QuerySegment> segments) {
+        if (!from.isBefore(to)) {
+            return;
+        }
+        if (level == levels.size()) {
+            segments.add(new QuerySegment(null, from, to));
+            return;
+        }
+        RollupGranularity granularity = levels.get(level);
+        LocalDateTime alignedFrom = granularity.ceil(from);
+        LocalDateTime alignedTo = granularity.floor(to);
+        if (alignedFrom.isBefore(alignedTo)) {
+            cover(from, alignedFrom, levels, level + 1, segments);
+            segments.add(new QuerySegment(granularity, alignedFrom, alignedTo));
+            cover(alignedTo, to, levels, level + 1, segments);
+        } else {
+            cover(from, to, levels, level + 1, segments);
+        }
+    }
+}
@@ -1,14 +1,32 @@
 package ewm.stat.service;
 
 import dto.EndpointHitDto;
+import dto.ViewFeedDto;
 import dto.ViewStatsDto;
 
+import java.io.InputStream;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface EndpointHitService {
 
     void create(EndpointHitDto endpointHitDto);
 
-    List<ViewStatsDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique);
+    long createAll(InputStream body);
+
+    long createAllBinary(InputStream body);
+
+    List<ViewStatsDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                                boolean approximate, Integer limit);
+
+    void validateStatsRequest(LocalDateTime start, LocalDateTime end, Integer limit);
+
+    /**
+     * Hands the same rows as {@link #getStats} to {@code sink} one by one as they are read.
+     */
+    void streamStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique, boolean approximate,
+                     Integer limit, Consumer<ViewStatsDto> sink);
+
+    ViewFeedDto getViewFeed(String epoch, long since, long waitMs, LocalDateTime start);
 }
@@ -1,48 +1,290 @@
 package ewm.stat.service;
 
 import dto.EndpointHitDto;
+import dto.ViewFeedDto;
 import dto.ViewStatsDto;
 import ewm.exception.BadRequestException;
+import ewm.exception.InternalServerException;
+import ewm.exception.TooManyRequestsException;
 import ewm.stat.EndpointHit;
 import ewm.stat.EndpointHitMapper;
 import ewm.stat.EndpointHitRepository;
+import ewm.stat.StatKey;
+import ewm.stat.dictionary.HitDictionary;
+import ewm.stat.feed.ViewChangeFeed;
+import ewm.stat.hot.HotRange;
+import ewm.stat.hot.HotWindowCounters;
+import ewm.stat.ingest.HitBatchWriter;
+import ewm.stat.ingest.HitIngestQueue;
+import ewm.stat.ingest.HitStreamReader;
+import ewm.stat.partition.HitPartitionManager;
+import ewm.stat.rollup.HitRollupRepository;
+import ewm.stat.rollup.QuerySegment;
+import ewm.stat.rollup.RollupGranularity;
+import ewm.stat.rollup.StatsQueryPlanner;
+import ewm.stat.sketch.HitSketchRepository;
+import ewm.stat.sketch.HyperLogLog;
+import ewm.stat.stream.StatsStreamRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.InputStream;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 @Transactional
 @Service
 @RequiredArgsConstructor
 public class EndpointHitServiceImpl implements EndpointHitService {
+    private static final LocalDateTime ALL_TIME_END = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+
     private final EndpointHitRepository repository;
     private final EndpointHitMapper mapper;
+    private final HitBatchWriter batchWriter;
+    private final Optional<HitIngestQueue> ingestQueue;
+    private final HitStreamReader streamReader;
+    private final HitRollupRepository rollupRepository;
+    private final StatsQueryPlanner planner;
+    private final HitSketchRepository sketchRepository;
+    private final Optional<HotWindowCounters> hotWindow;
+    private final HitDictionary dictionary;
+    private final Optional<ViewChangeFeed> changeFeed;
+    private final HitPartitionManager partitionManager;
+    private final StatsStreamRepository streamRepository;
+    @Value("${stats.ingest.batch-size:1000}")
+    private int batchSize;
+    @Value("${stats.ingest.max-request-hits:100000}")
+    private int maxRequestHits;
+    @Value("${stats.feed.max-wait-ms:30000}")
+    private long feedMaxWaitMs;
 
     @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void create(EndpointHitDto endpointHitDto) {
-        EndpointHit endpointHit = mapper.dtoToModel(endpointHitDto);
-        repository.save(endpointHit);
+        store(List.of(mapper.dtoToModel(endpointHitDto)));
     }
 
     @Override
-    public List<ViewStatsDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique) {
-        if (start.isAfter(end)) {
-            throw new BadRequestException("Время указанно не верно");
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public long createAll(InputStream body) {
+        List<EndpointHit> hits = new ArrayList<>();
+        long count = streamReader.read(body, batchSize, batch -> collect(hits, batch));
+        store(hits);
+        return count;
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public long createAllBinary(InputStream body) {
+        List<EndpointHit> hits = new ArrayList<>();
+        long count = streamReader.readBinary(body, batchSize, batch -> collect(hits, batch));
+        store(hits);
+        return count;
+    }
+
+    @Override
+    public List<ViewStatsDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                                       boolean approximate, Integer limit) {
+        validateStatsRequest(start, end, limit);
+        // end is inclusive, segments are half-open
+        LocalDateTime endExclusive = end.plus(1, ChronoUnit.MICROS);
+        List<Integer> uriIds = dictionary.findUriIds(uris);
+        if (uriIds != null && uriIds.isEmpty()) {
+            // none of the uris has ever been hit
+            return List.of();
         }
+        HotRange hot = hotWindow.map(counters -> counters.cover(start, endExclusive)).orElse(null);
+        List<ViewStatsDto> stats;
         if (unique) {
-            if (uris != null) {
-                return repository.getHitsWithUrisWithUniqueIp(uris, start, end);
+            if (hot != null && hot.from().equals(RollupGranularity.MINUTE.ceil(start))) {
+                stats = toSortedStats(hotWindow.get().countVisitors(start, endExclusive, hot, uris));
+            } else {
+                stats = countUniqueHits(start, endExclusive, uriIds, approximate);
             }
-            return repository.getHitsWithoutUrisWithUniqueIp(start, end);
         } else {
-            if (uris != null) {
-                return repository.getAllHitsWithUris(uris, start, end);
+            stats = countHits(start, endExclusive, hot, uris, uriIds);
+        }
+        return limit(stats, limit);
+    }
+
+    @Override
+    public void validateStatsRequest(LocalDateTime start, LocalDateTime end, Integer limit) {
+        if (start.isAfter(end)) {
+            throw new BadRequestException("Время указанно не верно");
+        }
+        if (limit != null && limit <= 0) {
+            throw new BadRequestException("Limit must be positive: " + limit);
+        }
+    }
+
+    /**
+     * Exact counts come from the database, whose committed hits are also what the hot window counts. Sketch
+     * estimates can only be ordered once every group is merged, so they are merged in memory as for /stats.
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void streamStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                            boolean approximate, Integer limit, Consumer<ViewStatsDto> sink) {
+        validateStatsRequest(start, end, limit);
+        LocalDateTime endExclusive = end.plus(1, ChronoUnit.MICROS);
+        List<Integer> uriIds = dictionary.findUriIds(uris);
+        if (uriIds != null && uriIds.isEmpty()) {
+            return;
+        }
+        if (!unique) {
+            streamRepository.streamHits(planHits(start, endExclusive), uriIds, limit, sink);
+        } else if (estimatesUniqueHits(start, approximate)) {
+            limit(countUniqueHits(start, endExclusive, uriIds, approximate), limit).forEach(sink);
+        } else {
+            streamRepository.streamUniqueHits(start, end, uriIds, limit, sink);
+        }
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ViewFeedDto getViewFeed(String epoch, long since, long waitMs, LocalDateTime start) {
+        ViewChangeFeed feed = changeFeed.orElseThrow(() -> new BadRequestException("View feed is disabled"));
+        if (waitMs < 0) {
+            throw new BadRequestException("Wait must not be negative: " + waitMs);
+        }
+        ViewChangeFeed.FeedChanges changes;
+        try {
+            changes = feed.await(epoch, since, Math.min(waitMs, feedMaxWaitMs));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InternalServerException("Interrupted while waiting for view changes");
+        }
+        List<ViewStatsDto> views;
+        if (changes.snapshot()) {
+            views = countUniqueHits(start, ALL_TIME_END, null, false);
+        } else if (changes.uriIds().isEmpty()) {
+            views = List.of();
+        } else {
+            views = countUniqueHits(start, ALL_TIME_END, List.copyOf(changes.uriIds()), false);
+        }
+        return new ViewFeedDto(changes.epoch(), changes.sequence(), changes.snapshot(), views);
+    }
+
+    private List<ViewStatsDto> countHits(LocalDateTime start, LocalDateTime endExclusive, HotRange hot,
+                                        List<String> uris, List<Integer> uriIds) {
+        Map<StatKey, Long> hits = new HashMap<>();
+        if (hot == null) {
+            addStoredHits(hits, start, endExclusive, uriIds);
+        } else {
+            addStoredHits(hits, start, hot.from(), uriIds);
+            hotWindow.get().addHits(hits, hot, uris);
+            addStoredHits(hits, hot.to(), endExclusive, uriIds);
+        }
+        return toSortedStats(hits);
+    }
+
+    private void addStoredHits(Map<StatKey, Long> hits, LocalDateTime from, LocalDateTime to,
+                               List<Integer> uriIds) {
+        for (QuerySegment segment : planHits(from, to)) {
+            for (ViewStatsDto stats : countHits(segment, uriIds)) {
+                hits.merge(new StatKey(stats.getApp(), stats.getUri()), stats.getHits(), Long::sum);
+            }
+        }
+    }
+
+    /**
+     * Exact distinct counts need raw hits. Once {@code stats.retention.days} has dropped part of the range,
+     * only the sketches still cover it, so the count is estimated over whole hours instead.
+     */
+    private List<ViewStatsDto> countUniqueHits(LocalDateTime start, LocalDateTime endExclusive, List<Integer> uriIds,
+                                               boolean approximate) {
+        LocalDateTime retainedSince = partitionManager.retainedSince();
+        if (retainedSince != null && start.isBefore(retainedSince)) {
+            LocalDateTime to = endExclusive.isAfter(retainedSince)
+                    ? endExclusive
+                    : RollupGranularity.HOUR.ceil(endExclusive);
+            return estimateUniqueHits(RollupGranularity.HOUR.floor(start), to, uriIds);
+        }
+        if (approximate && sketchRepository.isEnabled()) {
+            return estimateUniqueHits(start, endExclusive, uriIds);
+        }
+        return repository.countUniqueHits(start, endExclusive.minus(1, ChronoUnit.MICROS), uriIds);
+    }
+
+    private boolean estimatesUniqueHits(LocalDateTime start, boolean approximate) {
+        LocalDateTime retainedSince = partitionManager.retainedSince();
+        return retainedSince != null && start.isBefore(retainedSince) || approximate && sketchRepository.isEnabled();
+    }
+
+    private List<ViewStatsDto> estimateUniqueHits(LocalDateTime start, LocalDateTime endExclusive,
+                                                  List<Integer> uriIds) {
+        Map<StatKey, HyperLogLog> sketches = new HashMap<>();
+        for (QuerySegment segment : planner.plan(start, endExclusive, HitSketchRepository.GRANULARITIES)) {
+            if (segment.isRaw()) {
+                sketchRepository.addRawVisitors(sketches, segment.from(), segment.to(), uriIds);
+            } else {
+                sketchRepository.mergeSketches(sketches, segment.granularity(), segment.from(), segment.to(),
+                        uriIds);
             }
-            return repository.getAllHitsWithoutUris(start, end);
         }
+        Map<StatKey, Long> hits = new HashMap<>();
+        sketches.forEach((key, sketch) -> hits.put(key, sketch.estimate()));
+        return toSortedStats(hits);
     }
 
+    private static List<ViewStatsDto> limit(List<ViewStatsDto> stats, Integer limit) {
+        return limit != null && stats.size() > limit ? stats.subList(0, limit) : stats;
+    }
+
+    private List<ViewStatsDto> toSortedStats(Map<StatKey, Long> hits) {
+        return hits.entrySet().stream()
+                .map(entry -> new ViewStatsDto(entry.getKey().app(), entry.getKey().uri(), entry.getValue()))
+                .sorted(Comparator.comparing(ViewStatsDto::getHits).reversed())
+                .toList();
+    }
+
+    private List<ViewStatsDto> countHits(QuerySegment segment, List<Integer> uriIds) {
+        if (!segment.isRaw()) {
+            return rollupRepository.sumHits(segment.granularity(), segment.from(), segment.to(), uriIds);
+        }
+        return repository.countHitsInRange(segment.from(), segment.to(), uriIds);
+    }
+
+    private List<QuerySegment> planHits(LocalDateTime from, LocalDateTime to) {
+        LocalDateTime retainedSince = partitionManager.retainedSince();
+        return planner.plan(from, to, List.of(RollupGranularity.values())).stream()
+                .map(segment -> segment.isRaw() && retainedSince != null && !segment.to().isAfter(retainedSince)
+                        // raw hits of the range are dropped, count the minutes around it instead
+                        ? new QuerySegment(RollupGranularity.MINUTE, RollupGranularity.MINUTE.floor(segment.from()),
+                        RollupGranularity.MINUTE.ceil(segment.to()))
+                        : segment)
+                .toList();
+    }
+
+    /**
+     * The whole body is read and validated before anything is stored, so a bad hit rejects the request
+     * instead of leaving the hits before it stored.
+     */
+    private void collect(List<EndpointHit> hits, List<EndpointHitDto> batch) {
+        if (hits.size() + batch.size() > maxRequestHits) {
+            throw new BadRequestException("More than " + maxRequestHits + " hits in one request");
+        }
+        batch.stream().map(mapper::dtoToModel).forEach(hits::add);
+    }
+
+    private void store(List<EndpointHit> hits) {
+        if (ingestQueue.isPresent()) {
+            if (!ingestQueue.get().offerAll(hits)) {
+                throw new TooManyRequestsException("Hit queue is full, retry later");
+            }
+            return;
+        }
+        batchWriter.write(hits);
+    }
 
 }
@@ -0,0 +1,34 @@
+package ewm.stat.sketch;
+
+import ewm.stat.IpAddresses;
+
+public final class Hashing {
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final long SEED = 0x9e3779b97f4a7c15L;
+
+    private Hashing() {
+    }
+
+    public static long hashIp(String ip) {
+        return hash64(IpAddresses.encode(ip));
+    }
+
+    public static long hash64(byte[] data) {
+        long hash = SEED ^ data.length;
+        for (byte b : data) {
+            hash ^= b & 0xff;
+            hash *= FNV_PRIME;
+        }
+        return mix(hash);
+    }
+
+    // MurmurHash3 64-bit finalizer, spreads FNV output over all bits
+    private static long mix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb93fe53e4f3bL;
+        k ^= k >>> 33;
+        return k;
+    }
+}
@@ -0,0 +1,132 @@
+package ewm.stat.sketch;
+
+import ewm.DatabaseDialect;
+import ewm.stat.StatKey;
+import ewm.stat.dictionary.HitDictionary;
+import ewm.stat.rollup.RollupGranularity;
+import ewm.stat.rollup.RollupKey;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+@Repository
+public class HitSketchRepository {
+    public static final List<RollupGranularity> GRANULARITIES = List.of(RollupGranularity.DAY, RollupGranularity.HOUR);
+
+    private static final String INSERT_POSTGRESQL = "INSERT INTO endpoint_hit_sketches " +
+            "(granularity, bucket_start, app_id, uri_id, registers) VALUES (?, ?, ?, ?, ?) " +
+            "ON CONFLICT (granularity, bucket_start, app_id, uri_id) DO NOTHING";
+    private static final String INSERT_H2 = "MERGE INTO endpoint_hit_sketches AS s " +
+            "USING (VALUES (CAST(? AS VARCHAR(10)), CAST(? AS TIMESTAMP), CAST(? AS INT), " +
+            "CAST(? AS INT), CAST(? AS VARBINARY))) AS v (granularity, bucket_start, app_id, uri_id, registers) " +
+            "ON s.granularity = v.granularity AND s.bucket_start = v.bucket_start " +
+            "AND s.app_id = v.app_id AND s.uri_id = v.uri_id " +
+            "WHEN NOT MATCHED THEN INSERT (granularity, bucket_start, app_id, uri_id, registers) " +
+            "VALUES (v.granularity, v.bucket_start, v.app_id, v.uri_id, v.registers)";
+    private static final String SELECT_FOR_UPDATE = "SELECT registers FROM endpoint_hit_sketches " +
+            "WHERE granularity = ? AND bucket_start = ? AND app_id = ? AND uri_id = ? FOR UPDATE";
+    private static final String UPDATE = "UPDATE endpoint_hit_sketches SET registers = ? " +
+            "WHERE granularity = ? AND bucket_start = ? AND app_id = ? AND uri_id = ?";
+    private static final String SELECT_SKETCHES = "SELECT app_id, uri_id, registers FROM endpoint_hit_sketches " +
+            "WHERE granularity = :granularity AND bucket_start >= :from AND bucket_start < :to ";
+    private static final String SELECT_RAW_VISITORS = "SELECT DISTINCT app_id, uri_id, ip FROM endpoint_hits " +
+            "WHERE timestamp >= :from AND timestamp < :to ";
+    private static final String URIS_FILTER = "AND uri_id IN (:uriIds)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final DatabaseDialect dialect;
+    private final HitDictionary dictionary;
+    private final boolean enabled;
+    private final int precision;
+
+    public HitSketchRepository(NamedParameterJdbcTemplate jdbcTemplate, DatabaseDialect dialect,
+                               HitDictionary dictionary,
+                               @Value("${stats.sketch.enabled:true}") boolean enabled,
+                               @Value("${stats.sketch.relative-error:0.01}") double relativeError) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dialect = dialect;
+        this.dictionary = dictionary;
+        this.enabled = enabled;
+        this.precision = HyperLogLog.precisionFor(relativeError);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public HyperLogLog newSketch() {
+        return new HyperLogLog(precision);
+    }
+
+    /**
+     * Merges the partial sketches into the stored ones, rewriting a row only if the merge changed it. Sketches
+     * are stored sparse while few registers are set, see {@link HyperLogLog#toBytes()}. Keys are sorted so
+     * that concurrent batches lock sketch rows in the same order.
+     */
+    public void merge(SortedMap<RollupKey, HyperLogLog> partials) {
+        String insert = dialect == DatabaseDialect.POSTGRESQL ? INSERT_POSTGRESQL : INSERT_H2;
+        for (Map.Entry<RollupKey, HyperLogLog> entry : partials.entrySet()) {
+            RollupKey key = entry.getKey();
+            Timestamp bucketStart = Timestamp.valueOf(key.bucketStart());
+            String granularity = key.granularity().name();
+            int inserted = jdbcTemplate.getJdbcTemplate().update(insert, granularity, bucketStart, key.appId(),
+                    key.uriId(), entry.getValue().toBytes());
+            if (inserted > 0) {
+                continue;
+            }
+            byte[] stored = jdbcTemplate.getJdbcTemplate().queryForObject(SELECT_FOR_UPDATE, byte[].class,
+                    granularity, bucketStart, key.appId(), key.uriId());
+            byte[] merged = HyperLogLog.fromBytes(stored).merge(entry.getValue()).toBytes();
+            if (Arrays.equals(stored, merged)) {
+                // no register grew, as is usual for a busy key once its visitors come back
+                continue;
+            }
+            jdbcTemplate.getJdbcTemplate().update(UPDATE, merged, granularity, bucketStart, key.appId(),
+                    key.uriId());
+        }
+    }
+
+    public void mergeSketches(Map<StatKey, HyperLogLog> target, RollupGranularity granularity, LocalDateTime from,
+                              LocalDateTime to, List<Integer> uriIds) {
+        MapSqlParameterSource params = rangeParams(from, to, uriIds).addValue("granularity", granularity.name());
+        jdbcTemplate.query(withUris(SELECT_SKETCHES, uriIds), params, rs -> {
+            StatKey key = statKey(rs);
+            target.merge(key, HyperLogLog.fromBytes(rs.getBytes("registers")), HyperLogLog::merge);
+        });
+    }
+
+    public void addRawVisitors(Map<StatKey, HyperLogLog> target, LocalDateTime from, LocalDateTime to,
+                               List<Integer> uriIds) {
+        jdbcTemplate.query(withUris(SELECT_RAW_VISITORS, uriIds), rangeParams(from, to, uriIds), rs -> {
+            target.computeIfAbsent(statKey(rs), k -> newSketch()).add(Hashing.hash64(rs.getBytes("ip")));
+        });
+    }
+
+    private StatKey statKey(ResultSet rs) throws SQLException {
+        return new StatKey(dictionary.app(rs.getInt("app_id")), dictionary.uri(rs.getInt("uri_id")));
+    }
+
+    private MapSqlParameterSource rangeParams(LocalDateTime from, LocalDateTime to, List<Integer> uriIds) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", Timestamp.valueOf(from))
+                .addValue("to", Timestamp.valueOf(to));
+        if (uriIds != null) {
+            params.addValue("uriIds", uriIds);
+        }
+        return params;
+    }
+
+    private String withUris(String sql, List<Integer> uriIds) {
+        return uriIds != null ? sql + URIS_FILTER : sql;
+    }
+}
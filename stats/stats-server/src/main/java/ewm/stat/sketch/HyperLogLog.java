@@ -0,0 +1,165 @@
+package ewm.stat.sketch;
+
+/**
+ * HyperLogLog distinct counter over 64-bit hashes. With {@code 2^p} registers the relative standard
+ * error is about {@code 1.04 / sqrt(2^p)}. Sketches are merged by taking the register-wise maximum;
+ * a sketch of higher precision is folded down before merging into a coarser one.
+ */
+public class HyperLogLog {
+    public static final int MIN_PRECISION = 4;
+    public static final int MAX_PRECISION = 18;
+
+    private static final int SPARSE = 0x40;
+    private static final int SPARSE_ENTRY_BYTES = 3;
+    private static final int RANK_BITS = 6;
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("HyperLogLog precision must be between " + MIN_PRECISION +
+                    " and " + MAX_PRECISION + ": " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    private HyperLogLog(int precision, byte[] registers) {
+        this.precision = precision;
+        this.registers = registers;
+    }
+
+    public static int precisionFor(double relativeError) {
+        double registerCount = Math.pow(1.04 / relativeError, 2);
+        int precision = (int) Math.ceil(Math.log(registerCount) / Math.log(2));
+        return Math.max(MIN_PRECISION, Math.min(MAX_PRECISION, precision));
+    }
+
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        if ((bytes[0] & SPARSE) != 0) {
+            return fromSparseBytes(bytes);
+        }
+        int precision = bytes[0];
+        byte[] registers = new byte[1 << precision];
+        System.arraycopy(bytes, 1, registers, 0, registers.length);
+        return new HyperLogLog(precision, registers);
+    }
+
+    /**
+     * Dense form is the precision byte followed by all registers. While few registers are set the sketch is
+     * written sparse instead: the precision byte with {@link #SPARSE} set, then 3 bytes per non-zero register
+     * holding its index in the upper 18 bits and its rank in the lower 6.
+     */
+    public byte[] toBytes() {
+        int nonZero = 0;
+        for (byte register : registers) {
+            if (register != 0) {
+                nonZero++;
+            }
+        }
+        if (nonZero * SPARSE_ENTRY_BYTES >= registers.length) {
+            byte[] bytes = new byte[registers.length + 1];
+            bytes[0] = (byte) precision;
+            System.arraycopy(registers, 0, bytes, 1, registers.length);
+            return bytes;
+        }
+        byte[] bytes = new byte[nonZero * SPARSE_ENTRY_BYTES + 1];
+        bytes[0] = (byte) (precision | SPARSE);
+        int offset = 1;
+        for (int i = 0; i < registers.length; i++) {
+            if (registers[i] != 0) {
+                int entry = i << RANK_BITS | registers[i];
+                bytes[offset++] = (byte) (entry >>> 16);
+                bytes[offset++] = (byte) (entry >>> 8);
+                bytes[offset++] = (byte) entry;
+            }
+        }
+        return bytes;
+    }
+
+    private static HyperLogLog fromSparseBytes(byte[] bytes) {
+        int precision = bytes[0] & ~SPARSE;
+        byte[] registers = new byte[1 << precision];
+        for (int offset = 1; offset + SPARSE_ENTRY_BYTES <= bytes.length; offset += SPARSE_ENTRY_BYTES) {
+            int entry = (bytes[offset] & 0xFF) << 16 | (bytes[offset + 1] & 0xFF) << 8 | bytes[offset + 2] & 0xFF;
+            registers[entry >>> RANK_BITS] = (byte) (entry & (1 << RANK_BITS) - 1);
+        }
+        return new HyperLogLog(precision, registers);
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    public void add(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        long rest = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+        if (registers[index] < rank) {
+            registers[index] = rank;
+        }
+    }
+
+    /**
+     * Merges {@code other} into this sketch and returns the result, which is a new sketch when
+     * {@code other} has lower precision than this one.
+     */
+    public HyperLogLog merge(HyperLogLog other) {
+        if (other.precision < precision) {
+            return fold(other.precision).merge(other);
+        }
+        HyperLogLog source = other.precision > precision ? other.fold(precision) : other;
+        for (int i = 0; i < registers.length; i++) {
+            if (registers[i] < source.registers[i]) {
+                registers[i] = source.registers[i];
+            }
+        }
+        return this;
+    }
+
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = alpha(m) * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    private HyperLogLog fold(int targetPrecision) {
+        HyperLogLog folded = new HyperLogLog(targetPrecision);
+        int shift = precision - targetPrecision;
+        for (int i = 0; i < registers.length; i++) {
+            if (registers[i] == 0) {
+                continue;
+            }
+            int droppedBits = i & ((1 << shift) - 1);
+            int rank = droppedBits == 0
+                    ? shift + registers[i]
+                    : Integer.numberOfLeadingZeros(droppedBits) - (Integer.SIZE - shift) + 1;
+            int index = i >>> shift;
+            if (folded.registers[index] < rank) {
+                folded.registers[index] = (byte) rank;
+            }
+        }
+        return folded;
+    }
+
+    private static double alpha(int m) {
+        return switch (m) {
+            case 16 -> 0.673;
+            case 32 -> 0.697;
+            case 64 -> 0.709;
+            default -> 0.7213 / (1 + 1.079 / m);
+        };
+    }
+}
@@ -0,0 +1,116 @@
+package ewm.stat.stream;
+
+import dto.ViewStatsDto;
+import ewm.stat.dictionary.HitDictionary;
+import ewm.stat.rollup.QuerySegment;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Reads /stats rows through a forward-only cursor of {@code stats.stream.fetch-size} rows, most hits first,
+ * and hands each row on as it arrives. Raw and rollup segments are merged, grouped, ordered and limited by
+ * the database, so the server holds one fetch of rows at a time. On PostgreSQL the driver only uses a
+ * server-side cursor inside a transaction, hence the read-only transaction around each query.
+ */
+@Repository
+public class StatsStreamRepository {
+    private static final String RAW_SEGMENT = "SELECT app_id, uri_id, SUM(hits) AS hits " +
+            "FROM endpoint_hits " +
+            "WHERE timestamp >= :from%1$d AND timestamp < :to%1$d ";
+    private static final String ROLLUP_SEGMENT = "SELECT app_id, uri_id, SUM(hits) AS hits " +
+            "FROM endpoint_hit_rollups " +
+            "WHERE granularity = :granularity%1$d AND bucket_start >= :from%1$d AND bucket_start < :to%1$d ";
+    private static final String UNIQUE_HITS = "SELECT app_id, uri_id, COUNT(DISTINCT ip) AS hits " +
+            "FROM endpoint_hits " +
+            "WHERE timestamp BETWEEN :from AND :to ";
+    private static final String URIS_FILTER = "AND uri_id IN (:uriIds) ";
+    private static final String GROUP_BY = "GROUP BY app_id, uri_id";
+    private static final String ORDER_BY_HITS = " ORDER BY hits DESC";
+    private static final String LIMIT = " LIMIT :limit";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final HitDictionary dictionary;
+
+    public StatsStreamRepository(DataSource dataSource, PlatformTransactionManager transactionManager,
+                                 HitDictionary dictionary, @Value("${stats.stream.fetch-size:1000}") int fetchSize) {
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        template.setFetchSize(fetchSize);
+        this.jdbcTemplate = new NamedParameterJdbcTemplate(template);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Hits of all segments; {@code uriIds} and {@code limit} null mean all uris and all rows.
+     */
+    public void streamHits(List<QuerySegment> segments, List<Integer> uriIds, Integer limit,
+                           Consumer<ViewStatsDto> sink) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        StringBuilder sql = new StringBuilder("SELECT app_id, uri_id, SUM(hits) AS hits FROM (");
+        for (int i = 0; i < segments.size(); i++) {
+            QuerySegment segment = segments.get(i);
+            if (i > 0) {
+                sql.append(" UNION ALL ");
+            }
+            if (segment.isRaw()) {
+                sql.append(String.format(RAW_SEGMENT, i));
+            } else {
+                sql.append(String.format(ROLLUP_SEGMENT, i));
+                params.addValue("granularity" + i, segment.granularity().name());
+            }
+            params.addValue("from" + i, Timestamp.valueOf(segment.from()));
+            params.addValue("to" + i, Timestamp.valueOf(segment.to()));
+            if (uriIds != null) {
+                sql.append(URIS_FILTER);
+            }
+            sql.append(GROUP_BY);
+        }
+        sql.append(") AS segments ").append(GROUP_BY);
+        stream(sql, params, uriIds, limit, sink);
+    }
+
+    /**
+     * Distinct visitors in {@code [start, end]}; {@code uriIds} and {@code limit} null mean all uris and all rows.
+     */
+    public void streamUniqueHits(LocalDateTime start, LocalDateTime end, List<Integer> uriIds, Integer limit,
+                                 Consumer<ViewStatsDto> sink) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", Timestamp.valueOf(start))
+                .addValue("to", Timestamp.valueOf(end));
+        StringBuilder sql = new StringBuilder(UNIQUE_HITS);
+        if (uriIds != null) {
+            sql.append(URIS_FILTER);
+        }
+        sql.append(GROUP_BY);
+        stream(sql, params, uriIds, limit, sink);
+    }
+
+    private void stream(StringBuilder sql, MapSqlParameterSource params, List<Integer> uriIds, Integer limit,
+                        Consumer<ViewStatsDto> sink) {
+        if (uriIds != null) {
+            params.addValue("uriIds", uriIds);
+        }
+        sql.append(ORDER_BY_HITS);
+        if (limit != null) {
+            sql.append(LIMIT);
+            params.addValue("limit", limit);
+        }
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(sql.toString(), params, rs -> {
+            sink.accept(new ViewStatsDto(dictionary.app(rs.getInt("app_id")), dictionary.uri(rs.getInt("uri_id")),
+                    rs.getLong("hits")));
+        }));
+    }
+}
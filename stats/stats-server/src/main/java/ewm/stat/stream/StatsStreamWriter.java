@@ -0,0 +1,71 @@
+package ewm.stat.stream;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import dto.ViewStatsDto;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * Writes /stats rows to the response one by one, as a JSON array or as NDJSON, as the source hands them
+ * over, so the body is never built in memory.
+ */
+@Component
+public class StatsStreamWriter {
+    private final ObjectWriter writer;
+
+    public StatsStreamWriter(ObjectMapper objectMapper) {
+        this.writer = objectMapper.writerFor(ViewStatsDto.class).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    /**
+     * NDJSON when the Accept header asks for it, a JSON array otherwise.
+     */
+    public static boolean acceptsNdjson(String accept) {
+        if (accept == null) {
+            return false;
+        }
+        return MediaType.parseMediaTypes(accept).stream()
+                .anyMatch(mediaType -> mediaType.isCompatibleWith(MediaType.APPLICATION_NDJSON)
+                        && !mediaType.isWildcardType());
+    }
+
+    /**
+     * Every NDJSON row ends with a newline, so no rows is an empty body.
+     */
+    public void write(Consumer<Consumer<ViewStatsDto>> rows, boolean ndjson, OutputStream out) throws IOException {
+        try {
+            if (!ndjson) {
+                try (SequenceWriter sequence = writer.writeValuesAsArray(out)) {
+                    rows.accept(row -> write(() -> sequence.write(row)));
+                }
+                return;
+            }
+            rows.accept(row -> write(() -> {
+                writer.writeValue(out, row);
+                out.write('\n');
+            }));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void write(IoWrite write) {
+        try {
+            write.run();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private interface IoWrite {
+        void run() throws IOException;
+    }
+}
@@ -0,0 +1,264 @@
+package ewm.stat.wal;
+
+import ewm.stat.EndpointHit;
+import ewm.stat.ingest.HitBatchWriter;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Write-ahead log for hits accepted by the async ingest queue. Every hit is appended to a
+ * memory-mapped segment before it is acknowledged; the mapped pages are forced to disk every
+ * {@code stats.wal.sync-interval-ms} (group commit), so a killed process loses nothing and a power
+ * loss at most one sync interval. Once the batch writer has committed hits up to a sequence number,
+ * that number is stored in the checkpoint file and fully committed segments are deleted.
+ * <p>
+ * On startup everything after the checkpoint is written to the database before the web server
+ * accepts requests. A crash between a commit and its checkpoint replays that batch again.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = {"stats.ingest.async", "stats.wal.enabled"}, havingValue = "true")
+public class HitWriteAheadLog implements SmartInitializingSingleton {
+    private static final String CHECKPOINT = "checkpoint";
+
+    private final HitBatchWriter writer;
+    private final Path dir;
+    private final int segmentSize;
+    private final int replayBatchSize;
+    private final long syncIntervalMs;
+    private final Deque<WalSegment> segments = new ArrayDeque<>();
+    private final ScheduledExecutorService syncer = Executors.newSingleThreadScheduledExecutor(runnable ->
+            new Thread(runnable, "hit-wal-sync"));
+    private long nextSequence = 1;
+    private long committedSequence;
+    private boolean dirty;
+
+    public HitWriteAheadLog(HitBatchWriter writer,
+                            @Value("${stats.wal.dir:wal}") Path dir,
+                            @Value("${stats.wal.segment-size-mb:64}") int segmentSizeMb,
+                            @Value("${stats.wal.sync-interval-ms:50}") long syncIntervalMs,
+                            @Value("${stats.ingest.batch-size:1000}") int replayBatchSize) {
+        this.writer = writer;
+        this.dir = dir;
+        this.segmentSize = segmentSizeMb * 1024 * 1024;
+        this.syncIntervalMs = syncIntervalMs;
+        this.replayBatchSize = replayBatchSize;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        try {
+            Files.createDirectories(dir);
+            committedSequence = readCheckpoint();
+            replay();
+            synchronized (this) {
+                segments.addLast(WalSegment.create(dir, nextSequence, segmentSize));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open hit WAL in " + dir.toAbsolutePath(), e);
+        }
+        syncer.scheduleWithFixedDelay(this::sync, syncIntervalMs, syncIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Appends the hit and returns its sequence number. Callers that need the log order to match their
+     * own order have to serialize around this call.
+     */
+    public synchronized long append(EndpointHit hit) {
+        long sequence = nextSequence;
+        byte[] payload = encode(sequence, hit);
+        WalSegment active = segments.peekLast();
+        if (active == null) {
+            throw new IllegalStateException("Hit WAL is not open");
+        }
+        if (!active.append(payload)) {
+            active.force();
+            try {
+                active = WalSegment.create(dir, sequence, Math.max(segmentSize, payload.length + 8));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            segments.addLast(active);
+            active.append(payload);
+        }
+        nextSequence++;
+        dirty = true;
+        return sequence;
+    }
+
+    /**
+     * Marks every hit up to and including {@code sequence} as stored in the database.
+     */
+    public void commit(long sequence) {
+        List<WalSegment> obsolete = new ArrayList<>();
+        synchronized (this) {
+            if (sequence <= committedSequence) {
+                return;
+            }
+            committedSequence = sequence;
+            while (segments.size() > 1) {
+                WalSegment oldest = segments.pollFirst();
+                if (segments.peekFirst().firstSequence() - 1 > sequence) {
+                    segments.addFirst(oldest);
+                    break;
+                }
+                obsolete.add(oldest);
+            }
+        }
+        try {
+            writeCheckpoint(sequence);
+            for (WalSegment segment : obsolete) {
+                segment.delete();
+            }
+        } catch (IOException e) {
+            log.warn("Failed to advance hit WAL checkpoint to {}", sequence, e);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException, InterruptedException {
+        syncer.shutdown();
+        syncer.awaitTermination(5, TimeUnit.SECONDS);
+        synchronized (this) {
+            for (WalSegment segment : segments) {
+                segment.force();
+                segment.close();
+            }
+            segments.clear();
+        }
+    }
+
+    private void sync() {
+        WalSegment active;
+        synchronized (this) {
+            if (!dirty) {
+                return;
+            }
+            dirty = false;
+            active = segments.peekLast();
+        }
+        try {
+            active.force();
+        } catch (RuntimeException e) {
+            log.error("Failed to sync hit WAL", e);
+        }
+    }
+
+    private void replay() throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(dir)) {
+            files = list.filter(WalSegment::isSegment).sorted().toList();
+        }
+        // [0] last sequence seen, [1] hits replayed
+        long[] progress = {committedSequence, 0};
+        List<EndpointHit> batch = new ArrayList<>(replayBatchSize);
+        for (Path file : files) {
+            try (WalSegment segment = WalSegment.open(file)) {
+                segment.read(payload -> {
+                    long sequence = payload.getLong(0);
+                    progress[0] = Math.max(progress[0], sequence);
+                    if (sequence <= committedSequence) {
+                        return;
+                    }
+                    batch.add(decode(payload));
+                    progress[1]++;
+                    if (batch.size() == replayBatchSize) {
+                        writer.write(batch);
+                        batch.clear();
+                    }
+                });
+            }
+        }
+        writer.write(batch);
+        long lastSequence = progress[0];
+        nextSequence = lastSequence + 1;
+        if (lastSequence > committedSequence) {
+            writeCheckpoint(lastSequence);
+            committedSequence = lastSequence;
+        }
+        for (Path file : files) {
+            Files.delete(file);
+        }
+        if (progress[1] > 0) {
+            log.info("Replayed {} hits from the WAL in {}", progress[1], dir.toAbsolutePath());
+        }
+    }
+
+    private long readCheckpoint() throws IOException {
+        Path checkpoint = dir.resolve(CHECKPOINT);
+        return Files.exists(checkpoint) ? Long.parseLong(Files.readString(checkpoint).trim()) : 0;
+    }
+
+    private void writeCheckpoint(long sequence) throws IOException {
+        Path tmp = dir.resolve(CHECKPOINT + ".tmp");
+        Files.writeString(tmp, Long.toString(sequence));
+        Files.move(tmp, dir.resolve(CHECKPOINT), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static byte[] encode(long sequence, EndpointHit hit) {
+        byte[] app = hit.getApp().getBytes(StandardCharsets.UTF_8);
+        byte[] uri = hit.getUri().getBytes(StandardCharsets.UTF_8);
+        byte[] ip = hit.getIp().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(8 + 8 + 4 + 3 * 2 + app.length + uri.length + ip.length + 8);
+        LocalDateTime timestamp = hit.getTimestamp();
+        buffer.putLong(sequence)
+                .putLong(timestamp.toEpochSecond(ZoneOffset.UTC))
+                .putInt(timestamp.getNano());
+        putString(buffer, app);
+        putString(buffer, uri);
+        putString(buffer, ip);
+        buffer.putLong(hit.getHits());
+        return buffer.array();
+    }
+
+    private static EndpointHit decode(ByteBuffer payload) {
+        ByteBuffer buffer = payload.duplicate().position(8);
+        LocalDateTime timestamp = LocalDateTime.ofEpochSecond(buffer.getLong(), buffer.getInt(), ZoneOffset.UTC);
+        EndpointHit hit = EndpointHit.builder()
+                .app(getString(buffer))
+                .uri(getString(buffer))
+                .ip(getString(buffer))
+                .timestamp(timestamp)
+                .build();
+        // records written before hits were weighted end here
+        if (buffer.remaining() >= 8) {
+            hit.setHits(buffer.getLong());
+        }
+        return hit;
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] value) {
+        if (value.length > 0xffff) {
+            throw new IllegalArgumentException("Value is too long for the hit WAL: " + value.length + " bytes");
+        }
+        buffer.putShort((short) value.length).put(value);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] value = new byte[Short.toUnsignedInt(buffer.getShort())];
+        buffer.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+}
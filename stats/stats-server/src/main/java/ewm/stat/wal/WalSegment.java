@@ -0,0 +1,117 @@
+package ewm.stat.wal;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Fixed-size memory-mapped log file. Records are laid out as {@code [int length][int crc32c][payload]};
+ * the length is written last, so a record cut short by a crash reads as the (zero-filled) end of the
+ * segment.
+ */
+@Slf4j
+final class WalSegment implements Closeable {
+    private static final int HEADER_SIZE = 8;
+    private static final String SUFFIX = ".wal";
+
+    private final Path path;
+    private final long firstSequence;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    private WalSegment(Path path, long firstSequence, FileChannel channel, MappedByteBuffer buffer) {
+        this.path = path;
+        this.firstSequence = firstSequence;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    static WalSegment create(Path dir, long firstSequence, int size) throws IOException {
+        Path path = dir.resolve(String.format("%020d%s", firstSequence, SUFFIX));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        return new WalSegment(path, firstSequence, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+    }
+
+    static WalSegment open(Path path) throws IOException {
+        String name = path.getFileName().toString();
+        long firstSequence = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        return new WalSegment(path, firstSequence, channel,
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+
+    static boolean isSegment(Path path) {
+        return path.getFileName().toString().endsWith(SUFFIX);
+    }
+
+    long firstSequence() {
+        return firstSequence;
+    }
+
+    /**
+     * Appends the payload, returns false when the segment has no room left for it.
+     */
+    boolean append(byte[] payload) {
+        int position = buffer.position();
+        if (buffer.remaining() < HEADER_SIZE + payload.length) {
+            return false;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        buffer.putInt(position + 4, (int) crc.getValue());
+        buffer.put(position + HEADER_SIZE, payload);
+        buffer.putInt(position, payload.length);
+        buffer.position(position + HEADER_SIZE + payload.length);
+        return true;
+    }
+
+    void read(Consumer<ByteBuffer> payloads) {
+        ByteBuffer reader = buffer.duplicate().position(0);
+        CRC32C crc = new CRC32C();
+        while (reader.remaining() >= HEADER_SIZE) {
+            int start = reader.position();
+            int length = reader.getInt();
+            int checksum = reader.getInt();
+            if (length <= 0) {
+                return;
+            }
+            if (length > reader.remaining()) {
+                log.warn("Truncated record at {}:{}, ignoring the rest of the segment", path, start);
+                return;
+            }
+            ByteBuffer payload = reader.slice(reader.position(), length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                log.warn("Corrupt record at {}:{}, ignoring the rest of the segment", path, start);
+                return;
+            }
+            payloads.accept(payload);
+            reader.position(reader.position() + length);
+        }
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,17 @@
+CREATE TABLE IF NOT EXISTS endpoint_hit_rollups (
+    granularity VARCHAR(10) NOT NULL,
+    bucket_start TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    app VARCHAR(200) NOT NULL,
+    uri VARCHAR(200) NOT NULL,
+    hits BIGINT NOT NULL,
+    PRIMARY KEY (granularity, bucket_start, app, uri)
+);
+
+CREATE TABLE IF NOT EXISTS endpoint_hit_sketches (
+    granularity VARCHAR(10) NOT NULL,
+    bucket_start TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    app VARCHAR(200) NOT NULL,
+    uri VARCHAR(200) NOT NULL,
+    registers BYTEA NOT NULL,
+    PRIMARY KEY (granularity, bucket_start, app, uri)
+);
@@ -1,7 +1,5 @@
-DROP TABLE IF EXISTS endpoint_hits CASCADE;
-
 CREATE TABLE IF NOT EXISTS endpoint_hits (
-    id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
     app VARCHAR(200),
     uri VARCHAR(200),
     ip VARCHAR(200),
@@ -0,0 +1,7 @@
+CREATE INDEX IF NOT EXISTS endpoint_hits_uri_timestamp_idx ON endpoint_hits (uri, timestamp);
+
+CREATE INDEX IF NOT EXISTS endpoint_hits_timestamp_idx ON endpoint_hits (timestamp);
+
+CREATE INDEX IF NOT EXISTS endpoint_hit_rollups_uri_idx ON endpoint_hit_rollups (granularity, uri, bucket_start);
+
+CREATE INDEX IF NOT EXISTS endpoint_hit_sketches_uri_idx ON endpoint_hit_sketches (granularity, uri, bucket_start);
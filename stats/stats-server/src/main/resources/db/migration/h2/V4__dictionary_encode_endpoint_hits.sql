@@ -0,0 +1,44 @@
+-- H2 only backs the in-memory test database, which is empty at this point: recreate instead of converting
+DROP TABLE IF EXISTS endpoint_hits;
+DROP TABLE IF EXISTS endpoint_hit_rollups;
+DROP TABLE IF EXISTS endpoint_hit_sketches;
+
+CREATE TABLE endpoint_apps (
+    id INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name VARCHAR(200) NOT NULL UNIQUE
+);
+
+CREATE TABLE endpoint_uris (
+    id INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    uri VARCHAR(200) NOT NULL UNIQUE
+);
+
+CREATE TABLE endpoint_hits (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    app_id INT NOT NULL,
+    uri_id INT NOT NULL,
+    ip VARBINARY(16) NOT NULL,
+    timestamp TIMESTAMP WITHOUT TIME ZONE NOT NULL
+);
+CREATE INDEX endpoint_hits_uri_timestamp_idx ON endpoint_hits (uri_id, timestamp);
+CREATE INDEX endpoint_hits_timestamp_idx ON endpoint_hits (timestamp);
+
+CREATE TABLE endpoint_hit_rollups (
+    granularity VARCHAR(10) NOT NULL,
+    bucket_start TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    app_id INT NOT NULL,
+    uri_id INT NOT NULL,
+    hits BIGINT NOT NULL,
+    PRIMARY KEY (granularity, bucket_start, app_id, uri_id)
+);
+CREATE INDEX endpoint_hit_rollups_uri_idx ON endpoint_hit_rollups (granularity, uri_id, bucket_start);
+
+CREATE TABLE endpoint_hit_sketches (
+    granularity VARCHAR(10) NOT NULL,
+    bucket_start TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    app_id INT NOT NULL,
+    uri_id INT NOT NULL,
+    registers VARBINARY NOT NULL,
+    PRIMARY KEY (granularity, bucket_start, app_id, uri_id)
+);
+CREATE INDEX endpoint_hit_sketches_uri_idx ON endpoint_hit_sketches (granularity, uri_id, bucket_start);
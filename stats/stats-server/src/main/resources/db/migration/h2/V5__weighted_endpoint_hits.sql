@@ -0,0 +1 @@
+ALTER TABLE endpoint_hits ADD COLUMN hits INT DEFAULT 1 NOT NULL;
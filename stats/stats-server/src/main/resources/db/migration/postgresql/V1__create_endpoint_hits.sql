@@ -0,0 +1,14 @@
+-- earlier versions recreated the table from schema.sql on every start, nothing to preserve
+DROP TABLE IF EXISTS endpoint_hits CASCADE;
+
+CREATE TABLE IF NOT EXISTS endpoint_hits (
+    id BIGSERIAL,
+    app VARCHAR(200),
+    uri VARCHAR(200),
+    ip VARCHAR(200),
+    timestamp TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    PRIMARY KEY (id, timestamp)
+) PARTITION BY RANGE (timestamp);
+
+-- catches hits outside of the partitions created by HitPartitionManager
+CREATE TABLE IF NOT EXISTS endpoint_hits_default PARTITION OF endpoint_hits DEFAULT;
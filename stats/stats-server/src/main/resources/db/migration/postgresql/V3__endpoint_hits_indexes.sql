@@ -0,0 +1,11 @@
+-- lookups by event uris: index-only scans for both COUNT and COUNT(DISTINCT ip)
+CREATE INDEX IF NOT EXISTS endpoint_hits_uri_timestamp_idx ON endpoint_hits (uri, timestamp) INCLUDE (app, ip);
+
+-- range scans without uris over append-only, time-ordered data
+CREATE INDEX IF NOT EXISTS endpoint_hits_timestamp_brin_idx ON endpoint_hits USING BRIN (timestamp);
+
+CREATE INDEX IF NOT EXISTS endpoint_hit_rollups_uri_idx
+    ON endpoint_hit_rollups (granularity, uri, bucket_start) INCLUDE (app, hits);
+
+CREATE INDEX IF NOT EXISTS endpoint_hit_sketches_uri_idx
+    ON endpoint_hit_sketches (granularity, uri, bucket_start);
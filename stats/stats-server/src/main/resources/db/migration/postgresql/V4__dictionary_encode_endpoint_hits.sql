@@ -0,0 +1,96 @@
+CREATE TABLE IF NOT EXISTS endpoint_apps (
+    id INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name VARCHAR(200) NOT NULL UNIQUE
+);
+
+CREATE TABLE IF NOT EXISTS endpoint_uris (
+    id INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    uri VARCHAR(200) NOT NULL UNIQUE
+);
+
+INSERT INTO endpoint_apps (name)
+SELECT app FROM endpoint_hits WHERE app IS NOT NULL
+UNION SELECT app FROM endpoint_hit_rollups
+UNION SELECT app FROM endpoint_hit_sketches;
+
+INSERT INTO endpoint_uris (uri)
+SELECT uri FROM endpoint_hits WHERE uri IS NOT NULL
+UNION SELECT uri FROM endpoint_hit_rollups
+UNION SELECT uri FROM endpoint_hit_sketches;
+
+-- 16 bytes, IPv4 in its IPv4-mapped IPv6 form, same as IpAddresses.toBytes. Values that are not IP
+-- literals get a stable address in the discard-only prefix 0100::/64 so distinct counts still hold.
+CREATE FUNCTION pg_temp.ip_bytes(value TEXT) RETURNS BYTEA AS $$
+DECLARE
+    address INET;
+    host_text TEXT;
+    halves TEXT[];
+    head TEXT[];
+    tail TEXT[];
+    hex_groups TEXT[];
+    v4 INET;
+BEGIN
+    BEGIN
+        address := value::INET;
+    EXCEPTION WHEN others THEN
+        RETURN decode('0100000000000000' || substr(md5(value), 1, 16), 'hex');
+    END;
+    IF family(address) = 4 THEN
+        RETURN decode('00000000000000000000ffff' || lpad(to_hex(host(address)::INET - '0.0.0.0'::INET), 8, '0'), 'hex');
+    END IF;
+    host_text := host(address);
+    IF position('.' IN host_text) > 0 THEN
+        -- embedded IPv4 tail, e.g. ::ffff:1.2.3.4
+        v4 := substring(host_text FROM '[0-9.]+$')::INET;
+        host_text := regexp_replace(host_text, '[0-9.]+$', '')
+            || to_hex((v4 - '0.0.0.0'::INET) >> 16) || ':' || to_hex((v4 - '0.0.0.0'::INET) & 65535);
+    END IF;
+    halves := string_to_array(host_text, '::');
+    head := CASE WHEN halves[1] = '' THEN ARRAY[]::TEXT[] ELSE string_to_array(halves[1], ':') END;
+    tail := CASE WHEN coalesce(array_length(halves, 1), 0) < 2 OR halves[2] = '' THEN ARRAY[]::TEXT[]
+        ELSE string_to_array(halves[2], ':') END;
+    hex_groups := head || array_fill('0'::TEXT, ARRAY[8 - coalesce(array_length(head, 1), 0)
+        - coalesce(array_length(tail, 1), 0)]) || tail;
+    RETURN decode((SELECT string_agg(lpad(g, 4, '0'), '' ORDER BY n) FROM unnest(hex_groups) WITH ORDINALITY AS t(g, n)),
+        'hex');
+END
+$$ LANGUAGE plpgsql IMMUTABLE;
+
+-- raw hits: the UPDATE rewrites every row once, run VACUUM FULL endpoint_hits afterwards to give the
+-- space of the old VARCHAR columns back
+DROP INDEX IF EXISTS endpoint_hits_uri_timestamp_idx;
+ALTER TABLE endpoint_hits ADD COLUMN app_id INT, ADD COLUMN uri_id INT, ADD COLUMN ip_address BYTEA;
+UPDATE endpoint_hits h
+SET app_id = a.id, uri_id = u.id, ip_address = pg_temp.ip_bytes(h.ip)
+FROM endpoint_apps a, endpoint_uris u
+WHERE a.name = h.app AND u.uri = h.uri;
+DELETE FROM endpoint_hits WHERE app_id IS NULL OR uri_id IS NULL OR ip_address IS NULL;
+ALTER TABLE endpoint_hits DROP COLUMN app, DROP COLUMN uri, DROP COLUMN ip;
+ALTER TABLE endpoint_hits RENAME COLUMN ip_address TO ip;
+ALTER TABLE endpoint_hits ALTER COLUMN app_id SET NOT NULL, ALTER COLUMN uri_id SET NOT NULL,
+    ALTER COLUMN ip SET NOT NULL;
+CREATE INDEX IF NOT EXISTS endpoint_hits_uri_timestamp_idx ON endpoint_hits (uri_id, timestamp) INCLUDE (app_id, ip);
+
+DROP INDEX IF EXISTS endpoint_hit_rollups_uri_idx;
+ALTER TABLE endpoint_hit_rollups ADD COLUMN app_id INT, ADD COLUMN uri_id INT;
+UPDATE endpoint_hit_rollups r
+SET app_id = a.id, uri_id = u.id
+FROM endpoint_apps a, endpoint_uris u
+WHERE a.name = r.app AND u.uri = r.uri;
+ALTER TABLE endpoint_hit_rollups DROP CONSTRAINT endpoint_hit_rollups_pkey, DROP COLUMN app, DROP COLUMN uri,
+    ALTER COLUMN app_id SET NOT NULL, ALTER COLUMN uri_id SET NOT NULL,
+    ADD PRIMARY KEY (granularity, bucket_start, app_id, uri_id);
+CREATE INDEX IF NOT EXISTS endpoint_hit_rollups_uri_idx
+    ON endpoint_hit_rollups (granularity, uri_id, bucket_start) INCLUDE (app_id, hits);
+
+DROP INDEX IF EXISTS endpoint_hit_sketches_uri_idx;
+ALTER TABLE endpoint_hit_sketches ADD COLUMN app_id INT, ADD COLUMN uri_id INT;
+UPDATE endpoint_hit_sketches s
+SET app_id = a.id, uri_id = u.id
+FROM endpoint_apps a, endpoint_uris u
+WHERE a.name = s.app AND u.uri = s.uri;
+ALTER TABLE endpoint_hit_sketches DROP CONSTRAINT endpoint_hit_sketches_pkey, DROP COLUMN app, DROP COLUMN uri,
+    ALTER COLUMN app_id SET NOT NULL, ALTER COLUMN uri_id SET NOT NULL,
+    ADD PRIMARY KEY (granularity, bucket_start, app_id, uri_id);
+CREATE INDEX IF NOT EXISTS endpoint_hit_sketches_uri_idx
+    ON endpoint_hit_sketches (granularity, uri_id, bucket_start);
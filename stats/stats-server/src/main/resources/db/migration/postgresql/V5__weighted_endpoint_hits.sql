@@ -0,0 +1,7 @@
+-- a row may stand for several hits of one visitor (client-side pre-aggregation or sampling)
+ALTER TABLE endpoint_hits ADD COLUMN IF NOT EXISTS hits INT NOT NULL DEFAULT 1;
+
+-- keep SUM(hits) an index-only scan
+DROP INDEX IF EXISTS endpoint_hits_uri_timestamp_idx;
+CREATE INDEX IF NOT EXISTS endpoint_hits_uri_timestamp_idx ON endpoint_hits (uri_id, timestamp)
+    INCLUDE (app_id, ip, hits);
@@ -0,0 +1,97 @@
+package ewm;
+
+import ewm.exception.BadRequestException;
+import ewm.exception.PayloadTooLargeException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GzipRequestFilterTest {
+    private static final String BODY = "[{\"app\":\"ewm-main-service\",\"uri\":\"/events/1\",\"ip\":\"127.0.0.1\"," +
+            "\"timestamp\":\"2024-01-01 00:00:00\"}]";
+
+    @Test
+    void inflatesGzipBody() throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+
+        new GzipRequestFilter(1).doFilter(gzipRequest(BODY.getBytes(StandardCharsets.UTF_8)),
+                new MockHttpServletResponse(), chain);
+
+        assertThat(readAll(chain.getRequest().getInputStream())).isEqualTo(BODY);
+    }
+
+    @Test
+    void passesPlainBodyThrough() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/hit");
+        request.setContent(BODY.getBytes(StandardCharsets.UTF_8));
+        MockFilterChain chain = new MockFilterChain();
+
+        new GzipRequestFilter(1).doFilter(request, new MockHttpServletResponse(), chain);
+
+        assertThat(chain.getRequest()).isSameAs(request);
+    }
+
+    @Test
+    void rejectsBodyInflatingPastLimit() throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+
+        new GzipRequestFilter(1).doFilter(gzipRequest(new byte[1024 * 1024 + 1]), new MockHttpServletResponse(),
+                chain);
+
+        assertThatThrownBy(() -> readAll(chain.getRequest().getInputStream()))
+                .isInstanceOf(PayloadTooLargeException.class);
+    }
+
+    @Test
+    void rejectsBodyThatIsNotGzip() throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/hits");
+        request.addHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        request.setContent(BODY.getBytes(StandardCharsets.UTF_8));
+
+        new GzipRequestFilter(1).doFilter(request, new MockHttpServletResponse(), chain);
+
+        assertThatThrownBy(() -> chain.getRequest().getInputStream()).isInstanceOf(BadRequestException.class);
+    }
+
+    @Test
+    void rejectsTruncatedBody() throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+        byte[] body = gzipRequest(BODY.getBytes(StandardCharsets.UTF_8)).getContentAsByteArray();
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/hits");
+        request.addHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        request.setContent(Arrays.copyOf(body, body.length - 10));
+
+        new GzipRequestFilter(1).doFilter(request, new MockHttpServletResponse(), chain);
+
+        assertThatThrownBy(() -> readAll(chain.getRequest().getInputStream()))
+                .isInstanceOf(BadRequestException.class);
+    }
+
+    private static MockHttpServletRequest gzipRequest(byte[] body) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(body);
+        }
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/hits");
+        request.addHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        request.setContent(compressed.toByteArray());
+        return request;
+    }
+
+    private static String readAll(InputStream in) throws IOException {
+        return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+}
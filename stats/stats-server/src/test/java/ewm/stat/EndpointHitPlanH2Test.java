@@ -0,0 +1,35 @@
+package ewm.stat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ActiveProfiles("test")
+class EndpointHitPlanH2Test extends EndpointHitPlanTest {
+
+    @Override
+    void analyze() {
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    @Test
+    void hitsOfUrisUseUriIndex() {
+        assertThat(hitsPlan(URI_IDS)).containsIgnoringCase("endpoint_hits_uri_timestamp_idx");
+    }
+
+    @Test
+    void hitsOfAllUrisUseTimestampIndex() {
+        assertThat(hitsPlan(null)).containsIgnoringCase("endpoint_hits_timestamp_idx");
+    }
+
+    @Test
+    void uniqueHitsOfUrisUseUriIndex() {
+        assertThat(uniqueHitsPlan(URI_IDS)).containsIgnoringCase("endpoint_hits_uri_timestamp_idx");
+    }
+
+    @Test
+    void uniqueHitsOfAllUrisUseTimestampIndex() {
+        assertThat(uniqueHitsPlan(null)).containsIgnoringCase("endpoint_hits_timestamp_idx");
+    }
+}
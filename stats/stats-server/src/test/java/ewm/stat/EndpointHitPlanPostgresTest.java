@@ -0,0 +1,62 @@
+package ewm.stat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Sequential scans are switched off per query, so the plans show which index each query can use: uri lookups
+ * are index-only scans of the covering index, ranges over all uris are bitmap scans of the BRIN index.
+ * Partitions name their own copies of the indexes, so the plans are checked by scan type.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class EndpointHitPlanPostgresTest extends EndpointHitPlanTest {
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Override
+    void analyze() {
+        // index-only scans need the visibility map that VACUUM sets
+        jdbcTemplate.execute("VACUUM ANALYZE endpoint_hits");
+    }
+
+    @Override
+    String explain(String sql, SqlParameterSource params) {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            jdbcTemplate.execute("SET LOCAL enable_seqscan = off");
+            return super.explain(sql, params);
+        });
+    }
+
+    @Test
+    void hitsOfUrisAreIndexOnlyScans() {
+        assertThat(hitsPlan(URI_IDS)).contains("Index Only Scan").doesNotContain("Seq Scan");
+    }
+
+    @Test
+    void hitsOfAllUrisUseBrinIndex() {
+        assertThat(hitsPlan(null)).contains("Bitmap Index Scan").doesNotContain("Seq Scan");
+    }
+
+    @Test
+    void uniqueHitsOfUrisAreIndexOnlyScans() {
+        assertThat(uniqueHitsPlan(URI_IDS)).contains("Index Only Scan").doesNotContain("Seq Scan");
+    }
+
+    @Test
+    void uniqueHitsOfAllUrisUseBrinIndex() {
+        assertThat(uniqueHitsPlan(null)).contains("Bitmap Index Scan").doesNotContain("Seq Scan");
+    }
+}
@@ -0,0 +1,97 @@
+package ewm.stat;
+
+import ewm.stat.dictionary.HitDictionary;
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.AbstractList;
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Explains the statements {@link EndpointHitRepository} issues, over a few weeks of hits of 20 uris, so that a
+ * changed query or a lost index shows up as a changed plan.
+ */
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+abstract class EndpointHitPlanTest {
+    static final List<Integer> URI_IDS = List.of(1, 2);
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final LocalDateTime DAY = START.plusDays(10);
+    private static final int HITS = 100_000;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    private ExplainingJdbcTemplate explaining;
+    private EndpointHitRepository repository;
+
+    @BeforeEach
+    void insertHits() {
+        jdbcTemplate.update("DELETE FROM endpoint_hits");
+        jdbcTemplate.batchUpdate("INSERT INTO endpoint_hits (app_id, uri_id, ip, timestamp) VALUES (1, ?, ?, ?)",
+                new AbstractList<Object[]>() {
+                    @Override
+                    public Object[] get(int i) {
+                        return new Object[]{i % 20, new byte[]{10, 0, (byte) (i >> 8), (byte) i},
+                                Timestamp.valueOf(START.plusMinutes(i))};
+                    }
+
+                    @Override
+                    public int size() {
+                        return HITS;
+                    }
+                });
+        analyze();
+        explaining = new ExplainingJdbcTemplate(jdbcTemplate);
+        repository = new EndpointHitRepository(explaining, mock(HitDictionary.class));
+    }
+
+    abstract void analyze();
+
+    String explain(String sql, SqlParameterSource params) {
+        return String.join("\n", explaining.explain(sql, params));
+    }
+
+    String hitsPlan(List<Integer> uriIds) {
+        repository.countHitsInRange(DAY, DAY.plusDays(1), uriIds);
+        return explaining.plan;
+    }
+
+    String uniqueHitsPlan(List<Integer> uriIds) {
+        repository.countUniqueHits(DAY, DAY.plusDays(1), uriIds);
+        return explaining.plan;
+    }
+
+    /**
+     * Explains queries instead of running them.
+     */
+    private final class ExplainingJdbcTemplate extends NamedParameterJdbcTemplate {
+        private String plan;
+
+        private ExplainingJdbcTemplate(JdbcTemplate jdbcTemplate) {
+            super(jdbcTemplate);
+        }
+
+        @Override
+        public <T> List<T> query(String sql, SqlParameterSource params, RowMapper<T> rowMapper) {
+            plan = EndpointHitPlanTest.this.explain(sql, params);
+            return List.of();
+        }
+
+        private List<String> explain(String sql, SqlParameterSource params) {
+            return super.query("EXPLAIN " + sql, params, (rs, rowNum) -> rs.getString(1));
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package ewm.stat.ingest;
+
+import ewm.stat.EndpointHit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.TransientDataAccessResourceException;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class HitIngestQueueTest {
+    private final HitBatchWriter writer = mock(HitBatchWriter.class);
+    private final List<EndpointHit> stored = new ArrayList<>();
+    private final HitIngestQueue queue = new HitIngestQueue(writer, Optional.empty(), 100, 10, 10);
+
+    @AfterEach
+    void stop() throws InterruptedException {
+        queue.stop();
+    }
+
+    @Test
+    void skipsHitsThatFailOnTheirOwn() {
+        doAnswer(invocation -> {
+            List<EndpointHit> hits = invocation.getArgument(0);
+            if (hits.stream().anyMatch(hit -> hit.getUri().equals("/bad"))) {
+                throw new DataIntegrityViolationException("value too long");
+            }
+            store(hits);
+            return null;
+        }).when(writer).write(anyList());
+        List<EndpointHit> hits = hits(10);
+        hits.set(3, hit("/bad"));
+
+        queue.start();
+        queue.offerAll(hits);
+
+        assertThat(awaitStored(9)).extracting(EndpointHit::getUri).doesNotContain("/bad").hasSize(9);
+    }
+
+    @Test
+    void retriesTransientFailures() {
+        AtomicBoolean failed = new AtomicBoolean();
+        doAnswer(invocation -> {
+            if (!failed.getAndSet(true)) {
+                throw new TransientDataAccessResourceException("connection reset");
+            }
+            store(invocation.getArgument(0));
+            return null;
+        }).when(writer).write(anyList());
+
+        queue.start();
+        queue.offerAll(hits(10));
+
+        assertThat(awaitStored(10)).hasSize(10);
+    }
+
+    private synchronized void store(List<EndpointHit> hits) {
+        stored.addAll(hits);
+        notifyAll();
+    }
+
+    private synchronized List<EndpointHit> awaitStored(int count) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (stored.size() < count && System.currentTimeMillis() < deadline) {
+            try {
+                wait(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return List.copyOf(stored);
+    }
+
+    private static List<EndpointHit> hits(int count) {
+        return new ArrayList<>(IntStream.range(0, count).mapToObj(i -> hit("/events/" + i)).toList());
+    }
+
+    private static EndpointHit hit(String uri) {
+        return EndpointHit.builder().app("ewm-main-service").uri(uri).ip("10.0.0.1")
+                .timestamp(LocalDateTime.of(2024, 1, 1, 0, 0)).build();
+    }
+}
@@ -0,0 +1,95 @@
+package ewm.stat.stream;
+
+import dto.ViewStatsDto;
+import ewm.stat.dictionary.HitDictionary;
+import ewm.stat.rollup.QuerySegment;
+import ewm.stat.rollup.RollupGranularity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.when;
+
+@JdbcTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(StatsStreamRepository.class)
+class StatsStreamRepositoryTest {
+    private static final LocalDateTime TEN = LocalDateTime.of(2024, 1, 1, 10, 0);
+
+    @Autowired
+    private StatsStreamRepository repository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @MockBean
+    private HitDictionary dictionary;
+
+    @BeforeEach
+    void insertHits() {
+        when(dictionary.app(anyInt())).thenReturn("ewm-main-service");
+        when(dictionary.uri(anyInt())).thenAnswer(invocation -> "/events/" + invocation.getArgument(0));
+        insertHit(1, 1, TEN.plusSeconds(30), 1);
+        insertHit(1, 1, TEN.plusSeconds(40), 1);
+        insertHit(1, 2, TEN.plusSeconds(50), 2);
+        insertHit(2, 3, TEN.plusMinutes(1), 1);
+        // outside of the raw segment
+        insertHit(2, 3, TEN.plusSeconds(10), 5);
+        jdbcTemplate.update("INSERT INTO endpoint_hit_rollups (granularity, bucket_start, app_id, uri_id, hits) " +
+                "VALUES ('HOUR', ?, 1, 2, 10), ('HOUR', ?, 1, 1, 1)", Timestamp.valueOf(TEN.plusHours(1)),
+                Timestamp.valueOf(TEN.plusHours(1)));
+    }
+
+    @Test
+    void mergesRawAndRollupSegmentsMostHitsFirst() {
+        List<ViewStatsDto> stats = new ArrayList<>();
+
+        repository.streamHits(segments(), null, null, stats::add);
+
+        assertThat(stats).extracting(ViewStatsDto::getUri, ViewStatsDto::getHits)
+                .containsExactly(tuple("/events/2", 11L), tuple("/events/1", 5L));
+    }
+
+    @Test
+    void limitsAndFiltersInQuery() {
+        List<ViewStatsDto> stats = new ArrayList<>();
+
+        repository.streamHits(segments(), List.of(1), 1, stats::add);
+
+        assertThat(stats).extracting(ViewStatsDto::getUri, ViewStatsDto::getHits)
+                .containsExactly(tuple("/events/1", 5L));
+    }
+
+    @Test
+    void countsDistinctVisitors() {
+        List<ViewStatsDto> stats = new ArrayList<>();
+
+        repository.streamUniqueHits(TEN, TEN.plusHours(1), null, null, stats::add);
+
+        assertThat(stats).extracting(ViewStatsDto::getUri, ViewStatsDto::getHits)
+                .containsExactly(tuple("/events/1", 2L), tuple("/events/2", 1L));
+    }
+
+    private static List<QuerySegment> segments() {
+        return List.of(new QuerySegment(null, TEN.plusSeconds(20), TEN.plusHours(1)),
+                new QuerySegment(RollupGranularity.HOUR, TEN.plusHours(1), TEN.plusHours(2)));
+    }
+
+    private void insertHit(int uriId, int ip, LocalDateTime timestamp, int hits) {
+        jdbcTemplate.update("INSERT INTO endpoint_hits (app_id, uri_id, ip, timestamp, hits) VALUES (1, ?, ?, ?, ?)",
+                uriId, new byte[]{10, 0, 0, (byte) ip}, Timestamp.valueOf(timestamp), hits);
+    }
+}